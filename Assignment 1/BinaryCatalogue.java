@@ -0,0 +1,161 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// A fixed-layout binary copy of items.txt or users.txt. Every row is a record of the same size, so the file
+// can be memory-mapped and a row read only when it is needed. After the records comes an index of record
+// numbers sorted by ID, used to find a row by its ID with a binary search.
+//
+// Layout: magic, record count, ID column, column count, column widths, records, ID index.
+// A record is the number of columns in the row followed by each column as a length and its padded UTF-8 bytes.
+public class BinaryCatalogue {
+
+    private static final int MAGIC = 0x4C494243; // "LIBC"
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int idColumn;
+    private final int[] widths;
+    private final int[] offsets; // Offset of every column inside a record
+    private final int recordSize;
+    private final int recordsStart;
+    private final int indexStart;
+
+    private BinaryCatalogue(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a library catalogue");
+        }
+        count = buffer.getInt(4);
+        idColumn = buffer.getInt(8);
+        widths = new int[buffer.getInt(12)];
+        offsets = new int[widths.length];
+        int position = 1;
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = buffer.getInt(16 + i * 4);
+            offsets[i] = position;
+            position += 2 + widths[i];
+        }
+        recordSize = position;
+        recordsStart = 16 + widths.length * 4;
+        indexStart = recordsStart + count * recordSize;
+    }
+
+    public static boolean isCatalogue(String fileName) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+            return in.available() >= 4 && in.readInt() == MAGIC;
+        }
+    }
+
+    public static BinaryCatalogue open(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalogue is too large to map: " + fileName);
+            }
+            return new BinaryCatalogue(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() { return count; }
+
+    // The columns of the record, the same list readFileAndParse gives for its row
+    public List<String> getRow(int record) {
+        int start = recordsStart + record * recordSize;
+        int columns = buffer.get(start);
+        List<String> row = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            row.add(readColumn(start, i));
+        }
+        return row;
+    }
+
+    // The row with the given ID, or null if there is none
+    public List<String> find(String ID) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int record = buffer.getInt(indexStart + middle * 4);
+            int compare = readColumn(recordsStart + record * recordSize, idColumn).compareTo(ID);
+            if (compare == 0) {
+                return getRow(record);
+            } else if (compare < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    private String readColumn(int start, int column) {
+        int position = start + offsets[column];
+        byte[] bytes = new byte[buffer.getShort(position)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Converts a parsed items.txt or users.txt. Rows of an unknown type are left out and only the first row
+    // of a repeated ID is kept, so the catalogue holds exactly the users or items a library would register.
+    public static void convert(List<List<String>> rows, int idColumn, boolean items, String fileName) throws IOException {
+        List<List<String>> kept = new ArrayList<>();
+        Set<String> IDs = new HashSet<>();
+        for (List<String> row : rows) {
+            Object created = items ? Library.createItem(row) : Library.createUser(row);
+            if (created != null && IDs.add(row.get(idColumn))) {
+                kept.add(row);
+            }
+        }
+
+        int columns = 0;
+        for (List<String> row : kept) {
+            columns = Math.max(columns, row.size());
+        }
+        int[] widths = new int[columns];
+        for (List<String> row : kept) {
+            for (int i = 0; i < row.size(); i++) {
+                widths[i] = Math.max(widths[i], row.get(i).getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+
+        Integer[] index = new Integer[kept.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        Arrays.sort(index, Comparator.comparing(record -> kept.get(record).get(idColumn)));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(kept.size());
+            out.writeInt(idColumn);
+            out.writeInt(columns);
+            for (int width : widths) {
+                out.writeInt(width);
+            }
+            for (List<String> row : kept) {
+                out.writeByte(row.size());
+                for (int i = 0; i < columns; i++) {
+                    byte[] bytes = i < row.size() ? row.get(i).getBytes(StandardCharsets.UTF_8) : new byte[0];
+                    out.writeShort(bytes.length);
+                    out.write(bytes);
+                    out.write(new byte[widths[i] - bytes.length]);
+                }
+            }
+            for (int record : index) {
+                out.writeInt(record);
+            }
+        }
+    }
+
+    // Usage: BinaryCatalogue items|users <csv file> <catalogue file>
+    public static void main(String[] args) throws IOException {
+        boolean items = args[0].equals("items");
+        // The ID is the second column of items.txt and the third column of users.txt
+        convert(Main.readFileAndParse(args[1]), items ? 1 : 2, items, args[2]);
+    }
+}
@@ -0,0 +1,36 @@
+// Item types are turned into an ItemType once, when the item is created.
+enum ItemType {
+    NORMAL, REFERENCE, RARE, LIMITED, OTHER;
+
+    static ItemType of(String type) {
+        switch (type) {
+            case "normal": return NORMAL;
+            case "reference": return REFERENCE;
+            case "rare": return RARE;
+            case "limited": return LIMITED;
+            default: return OTHER;
+        }
+    }
+}
+
+// Which user kind may borrow which item type, so a borrow check is a single array lookup.
+public class BorrowPolicy {
+
+    public static final int STUDENT = 0;
+    public static final int ACADEMIC_STAFF = 1;
+    public static final int GUEST = 2;
+
+    // Rows are user kinds, columns follow the order of ItemType.
+    // Students cannot borrow reference items, guests cannot borrow rare items,
+    // and limited items can only be borrowed by academic staff.
+    private static final boolean[][] ALLOWED = {
+            // NORMAL, REFERENCE, RARE, LIMITED, OTHER
+            {true, false, true, false, true},   // STUDENT
+            {true, true, true, true, true},     // ACADEMIC_STAFF
+            {true, true, false, false, true},   // GUEST
+    };
+
+    public static boolean canBorrow(int userKind, ItemType itemType) {
+        return ALLOWED[userKind][itemType.ordinal()];
+    }
+}
@@ -1,29 +1,127 @@
-public class Item {
+import java.io.*;
+import java.util.*;
+
+public abstract class Item {
 
     // Variables that will not be changed later are assigned as Final.
     private final String ID;
     private final String name;
     private final String type;
+    private final ItemType typeCode;
+
+    // The item's index and its open loan (-1 when available) in the loan table of its library
+    private LoanTable loanTable;
+    private int index = -1;
+    private volatile int loan = -1;
 
-    private String borrowedDate;
-    private String borrowedBy;
+    private LinkedHashSet<User> reservations; // Users waiting for the item in the order they asked, created when first needed
+
+    private String info; // Cached information block, cleared whenever the borrow state changes
+    private int version = 0; // Counts the changes of the information block, used by LibrarySnapshot
 
     // The constructor used by the partners in each class connected to the Item class.
     protected Item(String ID, String name, String type) {
         this.ID = ID;
         this.name = name;
         this.type = type;
+        this.typeCode = ItemType.of(type);
+    }
+
+    public void register(LoanTable loanTable, int index) {
+        this.loanTable = loanTable;
+        this.index = index;
+    }
+
+    // Setter function related to borrow, the row is -1 when the item is returned.
+    // Synchronized on the item, the per-item lock of LibraryService, so the version counts every change
+    public synchronized void setLoan(int loan) {
+        this.loan = loan;
+        info = null;
+        version++;
     }
 
-    // Setter functions related to borrow.
-    public void setBorrowed_date(String borrowed_date) {this.borrowedDate = borrowed_date;}
-    public void setBorrowed_by(String borrowed_by) {this.borrowedBy = borrowed_by;}
+    // Adds the user to the end of the waiting list, false if the user is already waiting or holds the item
+    public boolean reserve(User user) {
+        if (isBorrowedBy(user)) {
+            return false;
+        }
+        if (reservations == null) {
+            reservations = new LinkedHashSet<>();
+        }
+        return reservations.add(user);
+    }
+
+    // Takes the first waiting user off the list, null if nobody is waiting
+    public User nextReservation() {
+        if (reservations == null || reservations.isEmpty()) {
+            return null;
+        }
+        Iterator<User> first = reservations.iterator();
+        User user = first.next();
+        first.remove();
+        return user;
+    }
+
+    // The open loan and the waiting users of the item, written to and read from a library snapshot
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(loan);
+        out.writeInt(reservations == null ? 0 : reservations.size());
+        if (reservations != null) {
+            for (User user : reservations) {
+                out.writeInt(user.getIndex());
+            }
+        }
+    }
+
+    public void readState(DataInputStream in) throws IOException {
+        setLoan(in.readInt());
+        reservations = null;
+        int waiting = in.readInt();
+        for (int i = 0; i < waiting; i++) {
+            reserve(loanTable.getUserAt(in.readInt()));
+        }
+    }
+
+    // The block written by displayItems is built once and reused until the item is borrowed or returned.
+    public String getInfo() {
+        if (info == null) {
+            String status;
+            if (!isAvailable()) {
+                status = "ID: " + ID + " Name: " + name + " Status: Borrowed " + "Borrowed Date: " + getBorrowedDate() + " Borrowed by: " + getBorrowedBy();
+            } else {
+                status = "ID: " + ID + " Name: " + name + " Status: Available";
+            }
+            info = "------ Item Information for " + ID + " ------" + System.lineSeparator() + status + System.lineSeparator() + getDetails();
+        }
+        return info;
+    }
+
+    // The last line of the information block, written by each item type.
+    protected abstract String getDetails();
+
+    // The name and the fields of each item type that the search command looks in.
+    public String[] getSearchFields() {
+        String[] details = getDetailFields();
+        String[] fields = Arrays.copyOf(details, details.length + 1);
+        fields[details.length] = name;
+        return fields;
+    }
+
+    protected abstract String[] getDetailFields();
 
     public String getID() { return ID; }
     public String getName() { return name; }
     public String getType() { return type; }
-    public String getBorrowedDate() { return borrowedDate; }
-    public String getBorrowedBy() { return borrowedBy; }
+    public ItemType getTypeCode() { return typeCode; }
+    public int getIndex() { return index; }
+    public int getVersion() { return version; }
+    public boolean isAvailable() { return loan == -1; }
+    public boolean isBorrowedBy(User user) {
+        int current = loan;
+        return current != -1 && loanTable.getUserAt(loanTable.getUser(current)) == user;
+    }
+    public String getBorrowedDate() { return isAvailable() ? null : loanTable.formatDay(loan); }
+    public String getBorrowedBy() { return isAvailable() ? null : loanTable.getUserAt(loanTable.getUser(loan)).getName(); }
 
 }
 
@@ -40,6 +138,12 @@ class Book extends Item {
     public String getAuthor() { return author; }
     public String getGenre() { return genre; }
 
+    @Override
+    protected String getDetails() { return "Author: " + author + " Genre: " + genre; }
+
+    @Override
+    protected String[] getDetailFields() { return new String[] {author, genre}; }
+
 }
 
 class Magazine extends Item {
@@ -55,6 +159,12 @@ class Magazine extends Item {
     public String getPublisher() { return publisher; }
     public String getCategory() { return category; }
 
+    @Override
+    protected String getDetails() { return "Publisher: " + publisher + " Category: " + category; }
+
+    @Override
+    protected String[] getDetailFields() { return new String[] {publisher, category}; }
+
 }
 
 class DVD extends Item {
@@ -73,4 +183,10 @@ class DVD extends Item {
     public String getCategory() { return category; }
     public String getRuntime() { return runtime; }
 
+    @Override
+    protected String getDetails() { return "Director: " + directory + " Category: " + category + " Runtime: " + runtime; }
+
+    @Override
+    protected String[] getDetailFields() { return new String[] {directory, category}; }
+
 }
\ No newline at end of file
@@ -0,0 +1,468 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// The state of one library branch: its users, items, clock and output file.
+// Branches share nothing, so each one can be run on its own thread.
+public class Library {
+
+    private final OutputSink output;
+    private final LibraryClock clock;
+    private final Map<String, User> usersByID = new HashMap<>();
+    private final Map<String, Item> itemsByID = new HashMap<>();
+    private final TreeMap<String, User> usersInOrder = new TreeMap<>();
+    private final TreeMap<String, Item> itemsInOrder = new TreeMap<>();
+    private final LoanTable loanTable = new LoanTable();
+    private final SearchIndex searchIndex = new SearchIndex(loanTable);
+
+    // Binary catalogues the users and items are created from when they are first needed, null when loaded from text
+    private BinaryCatalogue userCatalogue;
+    private BinaryCatalogue itemCatalogue;
+
+    private final LibraryMetrics metrics = new LibraryMetrics();
+
+    private boolean reservations = false; // Whether users who find an item borrowed wait for it
+
+    private LibraryStore store; // null when the library is not persisted
+    private boolean replaying = false;
+
+    public Library(OutputSink output, LibraryClock clock) {
+        this.output = output;
+        this.clock = clock;
+    }
+
+    // A library used only through applyBatch writes no output file.
+    public Library(LibraryClock clock) {
+        this(null, clock);
+    }
+
+    // A user who cannot borrow an item because it is borrowed is put on the item's waiting list,
+    // and the item is handed to the first eligible waiting user as soon as it comes back.
+    public void enableReservations() {
+        reservations = true;
+    }
+
+    public List<User> createUsers(List<List<String>> users) {
+        List<User> createdUsers = new ArrayList<>();
+        for (List<String> user : users) {
+            User created = createUser(user);
+            if (created != null) {
+                createdUsers.add(created);
+                registerUser(created);
+            }
+        }
+        return createdUsers;
+
+    }
+
+    public List<Item> createItems(List<List<String>> items) {
+        List<Item> createdItems = new ArrayList<>();
+        for (List<String> item : items) {
+            Item created = createItem(item);
+            if (created != null) {
+                createdItems.add(created);
+                registerItem(created);
+            }
+        }
+        return createdItems;
+    }
+
+    // Users and items of a binary catalogue are created and registered only when a command first needs them.
+    public void useCatalogues(BinaryCatalogue userCatalogue, BinaryCatalogue itemCatalogue) {
+        this.userCatalogue = userCatalogue;
+        this.itemCatalogue = itemCatalogue;
+    }
+
+    // Creates the users and items of the catalogues that are not created yet, in catalogue order.
+    public void loadCatalogues() {
+        if (userCatalogue != null) {
+            for (int i = 0; i < userCatalogue.size(); i++) {
+                List<String> row = userCatalogue.getRow(i);
+                if (!usersByID.containsKey(row.get(2))) {
+                    registerUser(createUser(row));
+                }
+            }
+            userCatalogue = null;
+        }
+        if (itemCatalogue != null) {
+            for (int i = 0; i < itemCatalogue.size(); i++) {
+                List<String> row = itemCatalogue.getRow(i);
+                if (!itemsByID.containsKey(row.get(1))) {
+                    registerItem(createItem(row));
+                }
+            }
+            itemCatalogue = null;
+        }
+    }
+
+    // Builds the users and items of text files in parallel and registers them in file order.
+    public void loadInParallel(String usersFile, String itemsFile) throws IOException {
+        for (Item item : ParallelLoader.load(itemsFile, Library::createItem)) {
+            registerItem(item);
+        }
+        for (User user : ParallelLoader.load(usersFile, Library::createUser)) {
+            registerUser(user);
+        }
+    }
+
+    public static User createUser(List<String> user) {
+        switch (user.get(0)) {
+            case "S":
+                return new Student(user.get(1), user.get(2), user.get(3), user.get(4), user.get(5), user.get(6).trim());
+            case "A":
+                return new AcademicStaff(user.get(1), user.get(2), user.get(3), user.get(4), user.get(5), user.get(6));
+            case "G":
+                return new Guest(user.get(1), user.get(2), user.get(3), user.get(4));
+            default:
+                System.out.println("Unknown type: " + user.get(0));
+                return null;
+        }
+    }
+
+    public static Item createItem(List<String> item) {
+        switch (item.get(0)) {
+            case "B":
+                return new Book(item.get(1), item.get(2), item.get(3), item.get(4), item.get(5));
+            case "M":
+                return new Magazine(item.get(1), item.get(2), item.get(3), item.get(4), item.get(5));
+            case "D":
+                return new DVD(item.get(1), item.get(2), item.get(3), item.get(4), item.get(5), item.get(6));
+            default:
+                System.out.println("Unknown type: " + item.get(0));
+                return null;
+        }
+    }
+
+    public void readAndCallCommands(List<List<String>> commands){
+        for (List<String> command : commands) {
+            callCommand(command);
+        }
+    }
+
+    public void streamAndCallCommands(String fileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Empty lines are skipped the same way readFileAndParse skips them
+                if (line.isEmpty()) {
+                    continue;
+                }
+                callCommand(Arrays.asList(line.trim().split(",")));
+            }
+        }
+    }
+
+    // Loads the saved state of the library and logs every state changing command from now on.
+    // Commands replayed from the log change the state again but write no output.
+    public void openStore(String logFile, String snapshotFile, int snapshotEvery) throws IOException {
+        // The snapshot refers to users and items by load order, so the whole catalogue is loaded in file order first
+        loadCatalogues();
+        LibraryStore opened = new LibraryStore(logFile, snapshotFile, snapshotEvery, loanTable, clock);
+        replaying = true;
+        opened.recover(line -> callCommand(Arrays.asList(line.split(","))));
+        replaying = false;
+        store = opened;
+    }
+
+    // Applies a batch of commands and returns one result per command, without formatting any output.
+    // Batches may come from several threads, one batch is applied at a time.
+    public synchronized List<CommandResult> applyBatch(List<LibraryCommand> commands) {
+        List<CommandResult> results = new ArrayList<>(commands.size());
+        for (LibraryCommand command : commands) {
+            long start = System.nanoTime();
+            CommandResult result = applyCommand(command);
+            metrics.recordCommand(command.getName(), System.nanoTime() - start);
+            // Like commands from a file, a command is logged once it has been applied.
+            // One naming an unknown user or item, or one that is invalid, changed nothing and is left out, replaying it would fail.
+            if (store != null && result.getCode() != CommandResult.NOT_FOUND && result.getCode() != CommandResult.INVALID) {
+                store.append(command.toLine());
+            }
+            if (store != null) {
+                store.commandDone();
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    // A bad command of a batch gets its own error code, nothing is changed for it and the rest of the batch goes on
+    private CommandResult applyCommand(LibraryCommand command) {
+        User user = findUserByID(command.getUserID());
+        Item item = command.getItemID() == null ? null : findItemByID(command.getItemID());
+        if (user == null || (item == null && command.getItemID() != null)) {
+            return new CommandResult(CommandResult.NOT_FOUND, 0, false);
+        }
+        // The date is checked before anything changes, a borrow never fails half way on it
+        if (command.getName().equals("borrow") && !isValidDate(command.getDate())) {
+            return new CommandResult(CommandResult.INVALID, user.getPenalty(), item.isAvailable());
+        }
+
+        int code = CommandResult.OK;
+        switch (command.getName()) {
+            case "borrow":
+                clock.observeDate(command.getDate());
+                code = user.borrow(item, command.getDate());
+                metrics.recordBorrow(code);
+                if (code == 4) {
+                    reserve(user, item);
+                }
+                break;
+            case "return":
+                code = user.returnItem(item) ? CommandResult.OK : CommandResult.NOT_BORROWED;
+                if (code == CommandResult.OK) {
+                    handOff(item, user);
+                }
+                break;
+            case "pay":
+                user.pay(clock.today());
+                break;
+        }
+        checkOverdueItems(user);
+        return new CommandResult(code, user.getPenalty(), item != null && item.isAvailable());
+    }
+
+    private static boolean isValidDate(String date) {
+        if (date == null) {
+            return false;
+        }
+        try {
+            LibraryClock.toEpochDay(date);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private void callCommand(List<String> command) {
+        String name = command.get(0).trim();
+        long start = System.nanoTime();
+        applyCommand(name, command);
+        metrics.recordCommand(name, System.nanoTime() - start);
+        if (store != null) {
+            store.commandDone();
+        }
+    }
+
+    private void applyCommand(String name, List<String> command) {
+        switch (name) {
+            case "borrow":
+                User borrowUser = requireUser(command.get(1).trim());
+                Item borrowItem = requireItem(command.get(2).trim());
+                String date = command.get(3).trim();
+                clock.observeDate(date);
+                int borrow = borrowUser.borrow(borrowItem, date);
+                logCommand(command);
+                metrics.recordBorrow(borrow);
+                if (borrow == 0) {
+                    mergeOutput(borrowUser.getName() + " successfully borrowed! " + borrowItem.getName());
+                } else if (borrow == 1) {
+                    mergeOutput(borrowUser.getName() + " cannot borrow " + borrowItem.getName() + ", you must first pay the penalty amount! " + borrowUser.getPenalty() + "$");
+                } else if (borrow == 2) {
+                    mergeOutput(borrowUser.getName() + " cannot borrow "+  borrowItem.getType() +" item!");
+                } else if (borrow == 3) {
+                    mergeOutput(borrowUser.getName() + " cannot borrow " + borrowItem.getName() + ", since the borrow limit has been reached!");
+                } else if (borrow == 4) {
+                    mergeOutput(borrowUser.getName() + " cannot borrow " + borrowItem.getName() + ", it is not available!" );
+                    reserve(borrowUser, borrowItem);
+                }
+                checkOverdueItems(borrowUser);
+                break;
+            case "return":
+                User returnUser = requireUser(command.get(1).trim());
+                Item return_item = requireItem(command.get(2).trim());
+                boolean returned = returnUser.returnItem(return_item);
+                logCommand(command);
+                if (returned) {
+                    mergeOutput(returnUser.getName() + " successfully returned " + return_item.getName());
+                    handOff(return_item, returnUser);
+                } else {
+                    mergeOutput("Error: Item " + return_item.getName() + " not found in borrowed items.");
+                }
+                checkOverdueItems(returnUser);
+                break;
+            case "pay":
+                User payUser = requireUser(command.get(1).trim());
+                payUser.pay(clock.today());
+                logCommand(command);
+                mergeOutput(payUser.getName() + " has paid penalty");
+                checkOverdueItems(payUser);
+                break;
+            case "displayUsers":
+                mergeOutput("");
+                displayUsers();
+                break;
+            case "displayItems":
+                mergeOutput("");
+                displayItems();
+                break;
+            case "search":
+                // search,<words>[,available] lists the IDs of the items matching every word
+                String query = command.get(1).trim();
+                boolean availableOnly = command.size() > 2 && command.get(2).trim().equals("available");
+                List<String> found = search(query, availableOnly);
+                if (found.isEmpty()) {
+                    mergeOutput("No items found for " + query);
+                } else {
+                    mergeOutput("Items found for " + query + ": " + String.join(" ", found));
+                }
+                break;
+            default:
+                System.out.println("Unknown command");
+                break;
+        }
+    }
+
+    public List<String> search(String query, boolean availableOnly) {
+        loadCatalogues();
+        return searchIndex.search(query, availableOnly);
+    }
+
+    private void checkOverdueItems(User user) {
+        long start = System.nanoTime();
+        List<Item> taken = reservations ? new ArrayList<>() : null;
+        int loans = user.checkOverdueItems(clock.today(), taken);
+        metrics.recordSweep(System.nanoTime() - start, loans);
+        if (taken != null) {
+            for (Item item : taken) {
+                handOff(item, user);
+            }
+        }
+    }
+
+    private void reserve(User user, Item item) {
+        if (reservations && item.reserve(user)) {
+            mergeOutput(user.getName() + " is waiting for " + item.getName());
+        }
+    }
+
+    // Waiting users who can no longer borrow the item (penalty, limit) are skipped and dropped from the list,
+    // and so is the user it came back from, who would otherwise get it straight back
+    private void handOff(Item item, User from) {
+        User next;
+        while (item.isAvailable() && (next = item.nextReservation()) != null) {
+            if (next == from) {
+                continue;
+            }
+            String today = LocalDate.ofEpochDay(clock.today()).format(LibraryClock.DATE_FORMAT);
+            if (next.borrow(item, today) == 0) {
+                mergeOutput(next.getName() + " received reserved item " + item.getName());
+            }
+        }
+    }
+
+    // Users and items are walked in ID order through the sorted registries, so nothing is sorted here.
+    // The information blocks come from the render caches of the users and items.
+    private void displayUsers() {
+        loadCatalogues();
+        mergeOutput("");
+        for (User user : usersInOrder.values()) {
+            mergeOutput(user.getInfo());
+            mergeOutput("");
+        }
+    }
+
+    private void displayItems() {
+        loadCatalogues();
+        Iterator<Item> iterator = itemsInOrder.values().iterator();
+        while (iterator.hasNext()) {
+            Item item = iterator.next();
+            mergeOutput(item.getInfo());
+
+            if (iterator.hasNext()) {
+                mergeOutput("");
+            }
+        }
+    }
+
+    // Every created user and item is put in a hash registry for lookups and a sorted one for displays.
+    // putIfAbsent keeps the first occurrence of a duplicated ID, the same one the old linear scan found.
+    // Registered users and items also get their index in the loan table.
+    private void registerUser(User user) {
+        if (usersByID.putIfAbsent(user.getID(), user) == null) {
+            usersInOrder.put(user.getID(), user);
+            loanTable.addUser(user);
+        }
+    }
+
+    private void registerItem(Item item) {
+        if (itemsByID.putIfAbsent(item.getID(), item) == null) {
+            itemsInOrder.put(item.getID(), item);
+            loanTable.addItem(item);
+            searchIndex.add(item);
+        }
+    }
+
+    // A command is logged once its user and item are found and it has been applied, before any of its output is written.
+    // So a command that fails is never in the log, and the output file never gets ahead of the log.
+    private void logCommand(List<String> command) {
+        if (store != null) {
+            store.append(String.join(",", command));
+        }
+    }
+
+    // Commands from a commands file stop the branch when they name a user or item that does not exist
+    private User requireUser(String ID) {
+        User user = findUserByID(ID);
+        if (user == null) {
+            throw new IllegalArgumentException("Unknown user " + ID);
+        }
+        return user;
+    }
+
+    private Item requireItem(String ID) {
+        Item item = findItemByID(ID);
+        if (item == null) {
+            throw new IllegalArgumentException("Unknown item " + ID);
+        }
+        return item;
+    }
+
+    public User findUserByID(String ID) {
+        User user = usersByID.get(ID);
+        if (user == null && userCatalogue != null) {
+            List<String> row = userCatalogue.find(ID);
+            if (row != null) {
+                user = createUser(row);
+                registerUser(user);
+            }
+        }
+        return user;
+    }
+
+    public Item findItemByID(String ID) {
+        Item item = itemsByID.get(ID);
+        if (item == null && itemCatalogue != null) {
+            List<String> row = itemCatalogue.find(ID);
+            if (row != null) {
+                item = createItem(row);
+                registerItem(item);
+            }
+        }
+        return item;
+    }
+
+    public LibraryMetrics getMetrics() {return metrics;}
+
+    public LibraryClock getClock() {return clock;}
+
+    // Users and items in ID order, the order of displayUsers and displayItems
+    public Collection<User> getUsers() {return Collections.unmodifiableCollection(usersInOrder.values());}
+    public Collection<Item> getItems() {return Collections.unmodifiableCollection(itemsInOrder.values());}
+
+    private void mergeOutput(String message) {
+        if (!replaying && output != null) {
+            output.writeLine(message);
+        }
+    }
+
+    // The lines left in the output buffer are written and the file is closed, a persisted library also writes its last snapshot
+    public void close() {
+        if (output != null) {
+            output.close();
+        }
+        if (store != null) {
+            store.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,637 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Measures throughput and allocation of the library engine on generated catalogues, users and command mixes.
+// Usage: LibraryBenchmark [sizes...], sizes are item counts and default to 1000 10000 100000.
+// The file parsing case reads a generated file of -Dbenchmark.parseMB megabytes, 100 by default,
+// its parsed rows take about ten times the file size so run it with -Xmx4g.
+// The search case searches a catalogue of -Dbenchmark.searchItems items, a million by default.
+// Every case is run a few times to warm up before it is measured, and commands use the command date clock
+// so the same data always gives the same work.
+public class LibraryBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final LocalDate START = LocalDate.of(2025, 1, 1);
+
+    private static long sink; // Results of measured loops go here so the loops are not optimized away
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[] {1000, 10000, 100000} : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        System.out.println("case,items,ops/s,bytes/op");
+        runParse(Integer.getInteger("benchmark.parseMB", 100));
+        runSearch(Integer.getInteger("benchmark.searchItems", 1000000));
+        for (int size : sizes) {
+            List<List<String>> items = generateItems(size);
+            List<List<String>> users = generateUsers(Math.max(10, size / 10));
+
+            // Command mixes: mostly borrows, many displays, and dates that move fast so loans become overdue
+            run("borrow-heavy", size, items, users, generateCommands(users, items, 20000, 0.8, 0.0, 0));
+            run("display-heavy", size, items, users, generateCommands(users, items, 2000, 0.5, 0.05, 0));
+            run("overdue-heavy", size, items, users, generateCommands(users, items, 20000, 0.7, 0.0, 5));
+
+            runLookup(size, items, users);
+            runParallelLoad(size, items);
+            runBorrow(size, items, users);
+            runBorrowPolicy(size, items, users);
+            runOverdueCheck(size, items, users);
+            runConcurrent(size, items, users, 0);
+            runConcurrent(size, items, users, 16);
+            runConcurrentOverdue(size, items, users);
+        }
+    }
+
+    // Throughput of readAndCallCommands for one command mix, a fresh library is built for every round
+    private static void run(String name, int size, List<List<String>> items, List<List<String>> users, List<List<String>> commands) throws IOException {
+        File outputFile = File.createTempFile("library-benchmark", ".txt");
+        outputFile.deleteOnExit();
+        measure(name, size, commands.size(), () -> {
+            Library library = new Library(new OutputSink(outputFile.getPath(), 8192), new CommandDateClock());
+            library.createItems(items);
+            library.createUsers(users);
+            return () -> {
+                library.readAndCallCommands(commands);
+                library.close();
+            };
+        });
+    }
+
+    // The regex split readFileAndParse used before the Tokenizer, next to Tokenizer.toRows, on one large items file.
+    // Operations are rows and the items column holds the file size in megabytes. Both must give the same rows,
+    // compared by count and hash so only one parsed file is held at a time.
+    private static void runParse(int megabytes) throws IOException {
+        File file = File.createTempFile("library-benchmark", ".txt");
+        file.deleteOnExit();
+        int rows = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            long written = 0;
+            while (written < megabytes * 1024L * 1024L) {
+                String line = "B," + (100000 + rows) + ",Book " + rows + ",Author " + rows % 500 + ",Genre " + rows % 20 + ",normal";
+                writer.write(line);
+                writer.write('\n');
+                written += line.length() + 1;
+                rows++;
+            }
+        }
+        List<List<String>> parsed = splitReadFileAndParse(file.getPath());
+        long expected = parsed.size() * 31L + parsed.hashCode();
+        parsed = null; // Dropped first so the two results are never held together
+        parsed = Main.readFileAndParse(file.getPath());
+        if (parsed.size() * 31L + parsed.hashCode() != expected) {
+            throw new IllegalStateException("the Tokenizer and the split parser give different rows");
+        }
+
+        parsed = null;
+        int operations = rows;
+        measure("readFileAndParse-split", megabytes, operations, () -> () -> sink += splitReadFileAndParse(file.getPath()).size());
+        measure("readFileAndParse-Tokenizer", megabytes, operations, () -> () -> sink += Main.readFileAndParse(file.getPath()).size());
+    }
+
+    // readFileAndParse as it was before the Tokenizer
+    private static List<List<String>> splitReadFileAndParse(String fileName) throws IOException {
+        String content = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(fileName)));
+        List<List<String>> allData = new ArrayList<>();
+        String[] lines = content.split("\n+");
+        for (String line : lines) {
+            line = line.trim();
+            allData.add(new ArrayList<>(Arrays.asList(line.split(","))));
+        }
+        return allData;
+    }
+
+    // ParallelLoader.load of a generated items file on fork-join pools of 1, 2, 4 ... threads up to the core count,
+    // or up to -Dbenchmark.loadThreads.
+    // Each pool size also gets a speed-up row, its throughput over that of one thread. Files smaller than
+    // two chunks are loaded as one chunk, so they show no speed-up. Bytes per item count only the calling thread.
+    private static void runParallelLoad(int size, List<List<String>> items) throws IOException {
+        File file = File.createTempFile("library-benchmark", ".txt");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (List<String> item : items) {
+                writer.write(String.join(",", item));
+                writer.write('\n');
+            }
+        }
+
+        int cores = Integer.getInteger("benchmark.loadThreads", Runtime.getRuntime().availableProcessors());
+        double single = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                double throughput = measure("ParallelLoader.load-" + threads + "-threads", size, items.size(),
+                        () -> () -> sink += ParallelLoader.load(file.getPath(), Library::createItem, pool).size());
+                if (threads == 1) {
+                    single = throughput;
+                }
+                System.out.printf(Locale.US, "ParallelLoader.load-%d-threads-speedup,%d,%.2f,%n", threads, size, throughput / single);
+            } finally {
+                pool.shutdown();
+            }
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    // Searches of one word that few items have, of two words with an available only filter, and of a word
+    // that a third of the items have, whose time is mostly the list of IDs it returns.
+    // The items are created in shuffled order so the order they are indexed in is not ID order,
+    // and a third of them are lent. Every result must be in ID order and match a scan of all items.
+    private static void runSearch(int size) throws IOException {
+        List<List<String>> items = new ArrayList<>(generateItems(size));
+        Collections.shuffle(items, new Random(3));
+        Library library = new Library(new CommandDateClock());
+        List<Item> createdItems = library.createItems(items);
+        List<User> createdUsers = library.createUsers(generateUsers(createdItems.size() / 3));
+        for (int i = 0; i < createdUsers.size(); i++) {
+            createdUsers.get(i).borrow(createdItems.get(i * 3), "01/01/2025");
+        }
+        String rare = "Book " + (size / 2 - size / 2 % 3);
+        String common = "Genre 7";
+
+        checkSearch(library, createdItems, rare, false);
+        checkSearch(library, createdItems, common, true);
+        checkSearch(library, createdItems, "book", false);
+        int operations = 1000;
+        measure("search-rare", size, operations, () -> () -> {
+            for (int i = 0; i < operations; i++) {
+                sink += library.search(rare, false).size();
+            }
+        });
+        measure("search-two-words-available", size, operations, () -> () -> {
+            for (int i = 0; i < operations; i++) {
+                sink += library.search(common, true).size();
+            }
+        });
+        int commonOperations = 20;
+        measure("search-common", size, commonOperations, () -> () -> {
+            for (int i = 0; i < commonOperations; i++) {
+                sink += library.search("book", false).size();
+            }
+        });
+    }
+
+    // The IDs a search must find, by looking at every item
+    private static void checkSearch(Library library, List<Item> items, String query, boolean availableOnly) {
+        List<String> words = Arrays.asList(query.toLowerCase(Locale.ROOT).split(" "));
+        List<String> expected = new ArrayList<>();
+        for (Item item : items) {
+            Set<String> itemWords = new HashSet<>();
+            for (String field : item.getSearchFields()) {
+                itemWords.addAll(Arrays.asList(field.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")));
+            }
+            if (itemWords.containsAll(words) && (!availableOnly || item.isAvailable())) {
+                expected.add(item.getID());
+            }
+        }
+        Collections.sort(expected);
+        if (expected.isEmpty() || !library.search(query, availableOnly).equals(expected)) {
+            throw new IllegalStateException("search for " + query + " does not give the matching items in ID order");
+        }
+    }
+
+    // findUserByID and findItemByID of random existing IDs, each a new String like the ones split from a command line,
+    // so the hash of every ID is worked out again. Run at every size, the rates should stay about the same.
+    private static void runLookup(int size, List<List<String>> items, List<List<String>> users) throws IOException {
+        int operations = 1000000;
+        Library library = new Library(new CommandDateClock());
+        library.createItems(items);
+        library.createUsers(users);
+        measure("findUserByID", size, operations, () -> {
+            String[] IDs = randomIDs(users, 2, operations);
+            return () -> {
+                for (String ID : IDs) {
+                    if (library.findUserByID(ID) != null) {
+                        sink++;
+                    }
+                }
+            };
+        });
+        measure("findItemByID", size, operations, () -> {
+            String[] IDs = randomIDs(items, 1, operations);
+            return () -> {
+                for (String ID : IDs) {
+                    if (library.findItemByID(ID) != null) {
+                        sink++;
+                    }
+                }
+            };
+        });
+    }
+
+    private static String[] randomIDs(List<List<String>> rows, int column, int count) {
+        Random random = new Random(4);
+        String[] IDs = new String[count];
+        for (int i = 0; i < count; i++) {
+            IDs[i] = new String(rows.get(random.nextInt(rows.size())).get(column).toCharArray());
+        }
+        return IDs;
+    }
+
+    // A borrow followed by a return of the same item, so the library stays in the same state
+    private static void runBorrow(int size, List<List<String>> items, List<List<String>> users) throws IOException {
+        int operations = 100000;
+        measure("User.borrow", size, operations, () -> {
+            Library library = new Library(new CommandDateClock());
+            List<Item> createdItems = library.createItems(items);
+            User user = library.createUsers(users).get(0);
+            return () -> {
+                for (int i = 0; i < operations; i++) {
+                    Item item = createdItems.get(i % createdItems.size());
+                    if (user.borrow(item, "01/01/2025") == 0) {
+                        user.returnItem(item);
+                    }
+                }
+            };
+        });
+    }
+
+    // The instanceof chain User.canBorrow used before the borrow policy table, next to the table itself.
+    // Both are asked about the same user and item pairs and must give the same answers.
+    private static void runBorrowPolicy(int size, List<List<String>> items, List<List<String>> users) throws IOException {
+        int operations = 1000000;
+        Library library = new Library(new CommandDateClock());
+        List<Item> createdItems = library.createItems(items);
+        List<User> createdUsers = library.createUsers(users);
+        for (int i = 0; i < operations; i++) {
+            User user = createdUsers.get(i % createdUsers.size());
+            Item item = createdItems.get(i * 7 % createdItems.size());
+            if (instanceofCanBorrow(user, item) != BorrowPolicy.canBorrow(user.getKind(), item.getTypeCode())) {
+                throw new IllegalStateException("the policy table and the instanceof chain differ for " + user.getID() + " and " + item.getID());
+            }
+        }
+
+        measure("canBorrow-instanceof", size, operations, () -> () -> {
+            for (int i = 0; i < operations; i++) {
+                if (instanceofCanBorrow(createdUsers.get(i % createdUsers.size()), createdItems.get(i * 7 % createdItems.size()))) {
+                    sink++;
+                }
+            }
+        });
+        measure("canBorrow-table", size, operations, () -> () -> {
+            for (int i = 0; i < operations; i++) {
+                User user = createdUsers.get(i % createdUsers.size());
+                if (BorrowPolicy.canBorrow(user.getKind(), createdItems.get(i * 7 % createdItems.size()).getTypeCode())) {
+                    sink++;
+                }
+            }
+        });
+    }
+
+    // The check as it was before the policy table, including the precedence of its guest condition
+    private static boolean instanceofCanBorrow(User user, Item item) {
+        if (user instanceof Student && item.getType().equals("reference")) {
+            return false;
+        }
+        if (user instanceof AcademicStaff) {
+            return true;
+        }
+        if (user instanceof Guest && item.getType().equals("rare") || item.getType().equals("limited")) {
+            return false;
+        }
+        return true;
+    }
+
+    // The overdue check of users who all hold loans that are not due yet, the common case after every command
+    private static void runOverdueCheck(int size, List<List<String>> items, List<List<String>> users) throws IOException {
+        int operations = 1000000;
+        measure("User.checkOverdueItems", size, operations, () -> {
+            Library library = new Library(new CommandDateClock());
+            List<Item> createdItems = library.createItems(items);
+            List<User> createdUsers = library.createUsers(users);
+            for (int i = 0; i < createdUsers.size() && i < createdItems.size(); i++) {
+                createdUsers.get(i).borrow(createdItems.get(i), "01/01/2025");
+            }
+            long today = START.toEpochDay();
+            return () -> {
+                for (int i = 0; i < operations; i++) {
+                    createdUsers.get(i % createdUsers.size()).checkOverdueItems(today);
+                }
+            };
+        });
+    }
+
+    // 64 clients borrow and return random items through one LibraryService. Every borrow uses the same date so no loan
+    // becomes overdue and an item only goes back when its client returns it. Each item has a count of the clients
+    // holding it, a borrow that finds it already held means the item was lent twice and stops the benchmark.
+    // Readers display users and items from the service's snapshots while the clients run, and at the end
+    // the last snapshot must show the same blocks as the users and items themselves.
+    private static void runConcurrent(int size, List<List<String>> items, List<List<String>> users, int readers) {
+        int clients = 64;
+        int operations = 20000;
+        Library library = new Library(new CommandDateClock());
+        List<Item> createdItems = library.createItems(items);
+        List<User> createdUsers = library.createUsers(users);
+        LibraryService service = new LibraryService(library);
+        AtomicIntegerArray holders = new AtomicIntegerArray(createdItems.size());
+        String date = START.format(LibraryClock.DATE_FORMAT);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients + readers);
+        AtomicBoolean done = new AtomicBoolean();
+        LongAdder reads = new LongAdder();
+        List<Future<?>> reading = new ArrayList<>();
+        for (int reader = 0; reader < readers; reader++) {
+            boolean showUsers = reader % 2 == 0;
+            reading.add(executor.submit(() -> {
+                long lastVersion = 0;
+                while (!done.get()) {
+                    LibrarySnapshot snapshot = service.snapshot();
+                    if (snapshot.getVersion() < lastVersion) {
+                        throw new IllegalStateException("snapshot went back from " + lastVersion + " to " + snapshot.getVersion());
+                    }
+                    lastVersion = snapshot.getVersion();
+                    String shown = showUsers ? snapshot.displayUsers() : snapshot.displayItems();
+                    if (shown.isEmpty()) {
+                        throw new IllegalStateException("empty display");
+                    }
+                    reads.increment();
+                }
+            }));
+        }
+        List<Future<Integer>> held = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int client = 0; client < clients; client++) {
+            Random random = new Random(client);
+            held.add(executor.submit(() -> {
+                List<Item> heldItems = new ArrayList<>();
+                List<User> heldBy = new ArrayList<>();
+                for (int i = 0; i < operations; i++) {
+                    if (!heldItems.isEmpty() && random.nextInt(3) == 0) {
+                        int pick = random.nextInt(heldItems.size());
+                        Item item = heldItems.remove(pick);
+                        User user = heldBy.remove(pick);
+                        // The count goes down first, the item may be lent again as soon as it is returned
+                        holders.decrementAndGet(item.getIndex());
+                        if (service.returnItem(user.getID(), item.getID()).getCode() != CommandResult.OK) {
+                            throw new IllegalStateException(user.getID() + " could not return " + item.getID());
+                        }
+                    } else {
+                        Item item = createdItems.get(random.nextInt(createdItems.size()));
+                        User user = createdUsers.get(random.nextInt(createdUsers.size()));
+                        if (service.borrow(user.getID(), item.getID(), date).getCode() == 0) {
+                            if (holders.incrementAndGet(item.getIndex()) != 1) {
+                                throw new IllegalStateException(item.getID() + " was lent twice");
+                            }
+                            heldItems.add(item);
+                            heldBy.add(user);
+                        }
+                    }
+                }
+                return heldItems.size();
+            }));
+        }
+
+        int stillHeld = 0;
+        try {
+            for (Future<Integer> future : held) {
+                stillHeld += future.get();
+            }
+            done.set(true);
+            for (Future<?> future : reading) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            done.set(true);
+            executor.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+
+        // The items the library sees as lent are exactly the ones the clients still hold
+        int lent = 0;
+        for (Item item : createdItems) {
+            if (!item.isAvailable()) {
+                lent++;
+            }
+        }
+        if (lent != stillHeld) {
+            throw new IllegalStateException(lent + " items are lent but clients hold " + stillHeld);
+        }
+        LibrarySnapshot last = service.snapshot();
+        int position = 0;
+        for (User user : library.getUsers()) {
+            if (!last.getUserInfo(position++).equals(user.getInfo())) {
+                throw new IllegalStateException("snapshot is behind for user " + user.getID());
+            }
+        }
+        position = 0;
+        for (Item item : library.getItems()) {
+            if (!last.getItemInfo(position++).equals(item.getInfo())) {
+                throw new IllegalStateException("snapshot is behind for item " + item.getID());
+            }
+        }
+
+        long total = (long) clients * operations;
+        if (readers == 0) {
+            System.out.printf(Locale.US, "LibraryService-%d-clients,%d,%.0f,%n", clients, size, total * 1e9 / nanos);
+        } else {
+            System.out.printf(Locale.US, "LibraryService-%d-clients-%d-readers,%d,%.0f,%n", clients, readers, size, total * 1e9 / nanos);
+            System.out.printf(Locale.US, "LibrarySnapshot-%d-readers,%d,%.0f,%n", readers, size, reads.sum() * 1e9 / nanos);
+        }
+    }
+
+    // 64 clients borrow, return and pay with dates that move forward, so the overdue check of a command takes items
+    // back from its user while other clients borrow and return them. A client cannot tell which of its items were
+    // taken back, so instead an auditor pauses all clients every few milliseconds and checks that every lent item
+    // is on the open loans of exactly one user and every item on a user's open loans is lent.
+    // Clients hold the read side of the pause lock around each command, which costs some throughput.
+    private static void runConcurrentOverdue(int size, List<List<String>> items, List<List<String>> users) {
+        int clients = 64;
+        int operations = 20000;
+        Library library = new Library(new CommandDateClock());
+        List<Item> createdItems = library.createItems(items);
+        List<User> createdUsers = library.createUsers(users);
+        LibraryService service = new LibraryService(library);
+        ReentrantReadWriteLock pause = new ReentrantReadWriteLock();
+        AtomicLong borrows = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<?>> running = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int client = 0; client < clients; client++) {
+            Random random = new Random(client);
+            running.add(executor.submit(() -> {
+                for (int i = 0; i < operations; i++) {
+                    User user = createdUsers.get(random.nextInt(createdUsers.size()));
+                    Item item = createdItems.get(random.nextInt(createdItems.size()));
+                    int pick = random.nextInt(10);
+                    pause.readLock().lock();
+                    try {
+                        if (pick < 6) {
+                            // The date moves a day forward every 1000 borrows of all the clients
+                            String date = START.plusDays(borrows.incrementAndGet() / 1000).format(LibraryClock.DATE_FORMAT);
+                            service.borrow(user.getID(), item.getID(), date);
+                        } else if (pick < 9) {
+                            service.returnItem(user.getID(), item.getID());
+                        } else {
+                            service.pay(user.getID());
+                        }
+                    } finally {
+                        pause.readLock().unlock();
+                    }
+                }
+            }));
+        }
+
+        int audits = 0;
+        try {
+            while (running.stream().anyMatch(future -> !future.isDone())) {
+                Thread.sleep(5);
+                pause.writeLock().lock();
+                try {
+                    audit(createdUsers, createdItems);
+                } finally {
+                    pause.writeLock().unlock();
+                }
+                audits++;
+            }
+            for (Future<?> future : running) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+        audit(createdUsers, createdItems);
+
+        // A penalty only comes from a loan taken back by an overdue check, so some user must have one left
+        if (createdUsers.stream().allMatch(user -> user.getPenalty() == 0)) {
+            throw new IllegalStateException("no loan was taken back by an overdue check");
+        }
+        long total = (long) clients * operations;
+        System.out.printf(Locale.US, "LibraryService-%d-clients-overdue-%d-audits,%d,%.0f,%n", clients, audits, size, total * 1e9 / nanos);
+    }
+
+    // Called while no command runs
+    private static void audit(List<User> users, List<Item> items) {
+        boolean[] onLoan = new boolean[items.size()];
+        for (User user : users) {
+            for (Item item : user.getOpenItems()) {
+                if (onLoan[item.getIndex()]) {
+                    throw new IllegalStateException(item.getID() + " is lent to two users");
+                }
+                if (item.isAvailable()) {
+                    throw new IllegalStateException(item.getID() + " is on the loans of " + user.getID() + " but available");
+                }
+                onLoan[item.getIndex()] = true;
+            }
+        }
+        for (Item item : items) {
+            if (!item.isAvailable() && !onLoan[item.getIndex()]) {
+                throw new IllegalStateException(item.getID() + " is lent but on no user's loans");
+            }
+        }
+    }
+
+    private interface Setup {
+        Body prepare() throws IOException;
+    }
+
+    private interface Body {
+        void run() throws IOException;
+    }
+
+    // Prints and returns the operations per second of the measured rounds
+    private static double measure(String name, int size, int operations, Setup setup) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long nanos = 0;
+        long bytes = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            Body body = setup.prepare();
+            long startBytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            body.run();
+            if (round >= WARMUP_ROUNDS) {
+                nanos += System.nanoTime() - start;
+                bytes += threads.getThreadAllocatedBytes(thread) - startBytes;
+            }
+        }
+        long total = (long) operations * MEASURED_ROUNDS;
+        System.out.printf(Locale.US, "%s,%d,%.0f,%.1f%n", name, size, total * 1e9 / nanos, (double) bytes / total);
+        return total * 1e9 / nanos;
+    }
+
+    private static List<List<String>> generateItems(int count) {
+        Random random = new Random(1);
+        String[] types = {"normal", "normal", "normal", "reference", "rare", "limited"};
+        List<List<String>> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String ID = String.valueOf(100000 + i);
+            String type = types[random.nextInt(types.length)];
+            switch (i % 3) {
+                case 0:
+                    items.add(Arrays.asList("B", ID, "Book " + i, "Author " + i % 500, "Genre " + i % 20, type));
+                    break;
+                case 1:
+                    items.add(Arrays.asList("M", ID, "Magazine " + i, "Publisher " + i % 50, "Category " + i % 10, type));
+                    break;
+                default:
+                    items.add(Arrays.asList("D", ID, "DVD " + i, "Director " + i % 200, "Category " + i % 10, "120 min", type));
+                    break;
+            }
+        }
+        return items;
+    }
+
+    private static List<List<String>> generateUsers(int count) {
+        List<List<String>> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String ID = String.valueOf(1000 + i);
+            switch (i % 3) {
+                case 0:
+                    users.add(Arrays.asList("S", "Student " + i, ID, "555-0000", "Department", "Faculty", "2"));
+                    break;
+                case 1:
+                    users.add(Arrays.asList("A", "Staff " + i, ID, "555-0000", "Department", "Faculty", "Professor"));
+                    break;
+                default:
+                    users.add(Arrays.asList("G", "Guest " + i, ID, "555-0000", "Occupation"));
+                    break;
+            }
+        }
+        return users;
+    }
+
+    // borrowShare of the commands are borrows, displayShare are displays and the rest are returns and pays.
+    // The date moves forward by up to daysPerStep days with every borrow.
+    private static List<List<String>> generateCommands(List<List<String>> users, List<List<String>> items, int count,
+                                                       double borrowShare, double displayShare, int daysPerStep) {
+        Random random = new Random(2);
+        LocalDate date = START;
+        List<List<String>> commands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String user = users.get(random.nextInt(users.size())).get(2);
+            String item = items.get(random.nextInt(items.size())).get(1);
+            double pick = random.nextDouble();
+            if (pick < displayShare) {
+                commands.add(Collections.singletonList(random.nextBoolean() ? "displayItems" : "displayUsers"));
+            } else if (pick < displayShare + borrowShare) {
+                date = date.plusDays(daysPerStep == 0 ? 0 : random.nextInt(daysPerStep + 1));
+                commands.add(Arrays.asList("borrow", user, item, date.format(LibraryClock.DATE_FORMAT)));
+            } else if (pick < displayShare + borrowShare + (1 - displayShare - borrowShare) * 0.8) {
+                commands.add(Arrays.asList("return", user, item));
+            } else {
+                commands.add(Arrays.asList("pay", user));
+            }
+        }
+        return commands;
+    }
+}
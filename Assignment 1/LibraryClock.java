@@ -0,0 +1,50 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+// The clock decides which day it is when overdue items are checked. Days are kept as epoch days.
+public interface LibraryClock {
+
+    DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    long today();
+
+    // Called with a day the clock should know about, such as the day saved in a snapshot
+    default void observe(long day) {}
+
+    // Called with the date column of every borrow command. Only a clock that takes today from the commands
+    // parses it, so under the wall clock a date is still parsed only for a loan that is made.
+    default void observeDate(String date) {}
+
+    static long toEpochDay(String date) { return LocalDate.parse(date, DATE_FORMAT).toEpochDay(); }
+
+    // -Dlibrary.clock=command selects the command date clock, anything else the wall clock
+    static LibraryClock fromProperty() {
+        if ("command".equals(System.getProperty("library.clock"))) {
+            return new CommandDateClock();
+        }
+        return new WallClock();
+    }
+}
+
+class WallClock implements LibraryClock {
+
+    @Override
+    public long today() { return LocalDate.now().toEpochDay(); }
+
+}
+
+// Today is the latest date seen in a borrow command, so replaying the same commands file always gives the same output.
+class CommandDateClock implements LibraryClock {
+
+    private volatile long today = Long.MIN_VALUE;
+
+    @Override
+    public long today() { return today; }
+
+    @Override
+    public synchronized void observe(long day) { today = Math.max(today, day); }
+
+    @Override
+    public void observeDate(String date) { observe(LibraryClock.toEpochDay(date)); }
+
+}
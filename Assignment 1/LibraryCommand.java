@@ -0,0 +1,61 @@
+// A borrow, return or pay command given to Library.applyBatch, the in-memory form of a commands file line.
+public class LibraryCommand {
+
+    private final String name;
+    private final String userID;
+    private final String itemID;
+    private final String date;
+
+    private LibraryCommand(String name, String userID, String itemID, String date) {
+        this.name = name;
+        this.userID = userID;
+        this.itemID = itemID;
+        this.date = date;
+    }
+
+    public static LibraryCommand borrow(String userID, String itemID, String date) { return new LibraryCommand("borrow", userID, itemID, date); }
+    public static LibraryCommand returnItem(String userID, String itemID) { return new LibraryCommand("return", userID, itemID, null); }
+    public static LibraryCommand pay(String userID) { return new LibraryCommand("pay", userID, null, null); }
+
+    public String getName() { return name; }
+    public String getUserID() { return userID; }
+    public String getItemID() { return itemID; }
+    public String getDate() { return date; }
+
+    // The same line a commands file would hold, used for the command log
+    public String toLine() {
+        String line = name + "," + userID;
+        if (itemID != null) {
+            line += "," + itemID;
+        }
+        if (date != null) {
+            line += "," + date;
+        }
+        return line;
+    }
+}
+
+// The outcome of one command of a batch. For borrow the code is the result of User.borrow,
+// for return and pay it is OK unless the item was not borrowed by the user.
+class CommandResult {
+
+    public static final int OK = 0;
+    public static final int NOT_BORROWED = 5;
+    public static final int NOT_FOUND = 6; // The user or the item does not exist
+    public static final int INVALID = 7; // The command cannot be applied as given, a borrow date that is not dd/MM/yyyy
+
+    private final int code;
+    private final int penalty;
+    private final boolean itemAvailable;
+
+    public CommandResult(int code, int penalty, boolean itemAvailable) {
+        this.code = code;
+        this.penalty = penalty;
+        this.itemAvailable = itemAvailable;
+    }
+
+    public int getCode() { return code; }
+    public int getPenalty() { return penalty; } // The penalty of the user after the command
+    public boolean isItemAvailable() { return itemAvailable; } // false for pay, which has no item
+
+}
@@ -0,0 +1,85 @@
+import java.io.*;
+import java.util.*;
+
+// Counts and latency histograms of the commands run by a library, the results of its borrow commands
+// and the cost of its overdue checks. Latencies are kept in power of two buckets of nanoseconds:
+// bucket i counts the latencies from 2^(i-1) up to 2^i nanoseconds.
+public class LibraryMetrics {
+
+    private static final String[] COMMANDS = {"borrow", "return", "pay", "displayUsers", "displayItems", "search", "unknown"};
+    private static final int BUCKETS = 64;
+
+    private final long[] counts = new long[COMMANDS.length];
+    private final long[] totalNanos = new long[COMMANDS.length];
+    private final long[][] histograms = new long[COMMANDS.length][BUCKETS];
+
+    private final long[] borrowResults = new long[5]; // Indexed by the result code of User.borrow
+
+    private long sweeps = 0;
+    private long sweepNanos = 0;
+    private long sweptLoans = 0;
+    private final long[] sweepHistogram = new long[BUCKETS];
+
+    public void recordCommand(String name, long nanos) {
+        int command = indexOf(name);
+        counts[command]++;
+        totalNanos[command] += nanos;
+        histograms[command][bucket(nanos)]++;
+    }
+
+    public void recordBorrow(int result) { borrowResults[result]++; }
+
+    public void recordSweep(long nanos, int loans) {
+        sweeps++;
+        sweepNanos += nanos;
+        sweptLoans += loans;
+        sweepHistogram[bucket(nanos)]++;
+    }
+
+    private static int indexOf(String name) {
+        for (int i = 0; i < COMMANDS.length - 1; i++) {
+            if (COMMANDS[i].equals(name)) {
+                return i;
+            }
+        }
+        return COMMANDS.length - 1;
+    }
+
+    private static int bucket(long nanos) { return 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)) & (BUCKETS - 1); }
+
+    // The report is written as JSON, histograms list only their non-empty buckets by upper bound in nanoseconds
+    public void writeReport(String fileName) {
+        StringBuilder report = new StringBuilder();
+        report.append("{\n  \"commands\": {\n");
+        for (int i = 0; i < COMMANDS.length; i++) {
+            report.append("    \"").append(COMMANDS[i]).append("\": {\"count\": ").append(counts[i])
+                    .append(", \"totalNanos\": ").append(totalNanos[i])
+                    .append(", \"histogram\": ").append(histogramToJson(histograms[i])).append("}")
+                    .append(i < COMMANDS.length - 1 ? ",\n" : "\n");
+        }
+        report.append("  },\n  \"borrowResults\": ").append(Arrays.toString(borrowResults)).append(",\n");
+        report.append("  \"overdueSweeps\": {\"count\": ").append(sweeps)
+                .append(", \"totalNanos\": ").append(sweepNanos)
+                .append(", \"loansTaken\": ").append(sweptLoans)
+                .append(", \"histogram\": ").append(histogramToJson(sweepHistogram)).append("}\n}\n");
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName, false))) {
+            writer.write(report.toString());
+        } catch (IOException e) {
+            System.out.println("Error writing to metrics file: " + e.getMessage());
+        }
+    }
+
+    private static String histogramToJson(long[] histogram) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] != 0) {
+                if (json.length() > 1) {
+                    json.append(", ");
+                }
+                json.append("\"").append(1L << i).append("\": ").append(histogram[i]);
+            }
+        }
+        return json.append("}").toString();
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+// A library that many request handlers can use at the same time.
+// The whole catalogue is loaded when the service is made, so finding users and items only reads the registries.
+// Every command locks its user and then its item, never the other way around, so commands on different
+// users and items run in parallel and an item is only lent by the one thread that holds its lock.
+// Displays read a LibrarySnapshot, which every command replaces with one holding the blocks it changed,
+// so readers never take a lock and always see the library as it was after some set of whole commands.
+// Reservations, the command log and the metrics are left to the single threaded Library commands.
+public class LibraryService {
+
+    private final Library library;
+
+    // Display positions of the users and items, by their index in the loan table
+    private final int[] userPositions;
+    private final int[] itemPositions;
+    private final AtomicReference<LibrarySnapshot> snapshot;
+
+    public LibraryService(Library library) {
+        this.library = library;
+        library.loadCatalogues();
+
+        List<LibrarySnapshot.Block> users = new ArrayList<>();
+        userPositions = new int[library.getUsers().size()];
+        for (User user : library.getUsers()) {
+            userPositions[user.getIndex()] = users.size();
+            users.add(new LibrarySnapshot.Block(user.getInfo(), user.getVersion()));
+        }
+        List<LibrarySnapshot.Block> items = new ArrayList<>();
+        itemPositions = new int[library.getItems().size()];
+        for (Item item : library.getItems()) {
+            itemPositions[item.getIndex()] = items.size();
+            items.add(new LibrarySnapshot.Block(item.getInfo(), item.getVersion()));
+        }
+        snapshot = new AtomicReference<>(LibrarySnapshot.of(users, items));
+    }
+
+    // The latest snapshot, it never changes once returned
+    public LibrarySnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    public CommandResult borrow(String userID, String itemID, String date) {
+        User user = library.findUserByID(userID);
+        Item item = library.findItemByID(itemID);
+        if (user == null || item == null) {
+            return new CommandResult(CommandResult.NOT_FOUND, 0, false);
+        }
+        synchronized (user) {
+            int code;
+            // The availability check and the new loan happen under the item's lock
+            synchronized (item) {
+                library.getClock().observeDate(date);
+                code = user.borrow(item, date);
+            }
+            return finish(user, item, code);
+        }
+    }
+
+    public CommandResult returnItem(String userID, String itemID) {
+        User user = library.findUserByID(userID);
+        Item item = library.findItemByID(itemID);
+        if (user == null || item == null) {
+            return new CommandResult(CommandResult.NOT_FOUND, 0, false);
+        }
+        synchronized (user) {
+            boolean returned;
+            synchronized (item) {
+                returned = user.returnItem(item);
+            }
+            return finish(user, item, returned ? CommandResult.OK : CommandResult.NOT_BORROWED);
+        }
+    }
+
+    public CommandResult pay(String userID) {
+        User user = library.findUserByID(userID);
+        if (user == null) {
+            return new CommandResult(CommandResult.NOT_FOUND, 0, false);
+        }
+        synchronized (user) {
+            user.pay(library.getClock().today());
+            return finish(user, null, CommandResult.OK);
+        }
+    }
+
+    // Runs the overdue check of the user, whose lock is held. Items taken back are locked one at a time by Item.setLoan.
+    // The blocks of the user and of every item the command touched then go into the next snapshot together.
+    private CommandResult finish(User user, Item item, int code) {
+        List<Item> taken = new ArrayList<>();
+        user.checkOverdueItems(library.getClock().today(), taken);
+
+        Map<Integer, LibrarySnapshot.Block> users = Collections.singletonMap(userPositions[user.getIndex()],
+                new LibrarySnapshot.Block(user.getInfo(), user.getVersion()));
+        Map<Integer, LibrarySnapshot.Block> items = new HashMap<>();
+        if (item != null) {
+            putBlock(items, item);
+        }
+        for (Item takenItem : taken) {
+            putBlock(items, takenItem);
+        }
+        snapshot.updateAndGet(current -> current.with(users, items));
+        return new CommandResult(code, user.getPenalty(), item != null && item.isAvailable());
+    }
+
+    // The block and its version are read under the item's lock so they belong together
+    private void putBlock(Map<Integer, LibrarySnapshot.Block> blocks, Item item) {
+        synchronized (item) {
+            blocks.put(itemPositions[item.getIndex()], new LibrarySnapshot.Block(item.getInfo(), item.getVersion()));
+        }
+    }
+}
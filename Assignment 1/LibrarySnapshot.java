@@ -0,0 +1,103 @@
+import java.util.*;
+
+// An immutable view of the information blocks of every user and item at one point in time, in display order.
+// The blocks are kept in chunks, a new snapshot copies the chunk list and only the chunks whose blocks changed,
+// so readers keep using the old snapshot while writers make the next one.
+public final class LibrarySnapshot {
+
+    private static final int CHUNK = 64;
+
+    private final Block[][] users;
+    private final Block[][] items;
+    private final int userCount;
+    private final int itemCount;
+    private final long version; // The number of changes applied since the first snapshot
+
+    // An information block and the version of the user or item it was taken from
+    static final class Block {
+        final String info;
+        final int version;
+
+        Block(String info, int version) {
+            this.info = info;
+            this.version = version;
+        }
+    }
+
+    private LibrarySnapshot(Block[][] users, int userCount, Block[][] items, int itemCount, long version) {
+        this.users = users;
+        this.items = items;
+        this.userCount = userCount;
+        this.itemCount = itemCount;
+        this.version = version;
+    }
+
+    static LibrarySnapshot of(List<Block> users, List<Block> items) {
+        return new LibrarySnapshot(toChunks(users), users.size(), toChunks(items), items.size(), 0);
+    }
+
+    private static Block[][] toChunks(List<Block> blocks) {
+        Block[][] chunks = new Block[(blocks.size() + CHUNK - 1) / CHUNK][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = blocks.subList(i * CHUNK, Math.min(blocks.size(), (i + 1) * CHUNK)).toArray(new Block[0]);
+        }
+        return chunks;
+    }
+
+    // Returns a snapshot with the given blocks, keyed by display position. A block older than the one
+    // already in the snapshot is ignored, so changes published out of order never go back in time.
+    LibrarySnapshot with(Map<Integer, Block> changedUsers, Map<Integer, Block> changedItems) {
+        Block[][] newUsers = apply(users, changedUsers);
+        Block[][] newItems = apply(items, changedItems);
+        if (newUsers == users && newItems == items) {
+            return this;
+        }
+        return new LibrarySnapshot(newUsers, userCount, newItems, itemCount, version + 1);
+    }
+
+    private static Block[][] apply(Block[][] chunks, Map<Integer, Block> changed) {
+        Block[][] result = chunks;
+        for (Map.Entry<Integer, Block> entry : changed.entrySet()) {
+            int chunk = entry.getKey() / CHUNK;
+            int offset = entry.getKey() % CHUNK;
+            if (result[chunk][offset].version >= entry.getValue().version) {
+                continue;
+            }
+            // The chunk list and a chunk are copied the first time they change in this snapshot
+            if (result == chunks) {
+                result = chunks.clone();
+            }
+            if (result[chunk] == chunks[chunk]) {
+                result[chunk] = chunks[chunk].clone();
+            }
+            result[chunk][offset] = entry.getValue();
+        }
+        return result;
+    }
+
+    public long getVersion() { return version; }
+    public int userCount() { return userCount; }
+    public int itemCount() { return itemCount; }
+    public String getUserInfo(int position) { return users[position / CHUNK][position % CHUNK].info; }
+    public String getItemInfo(int position) { return items[position / CHUNK][position % CHUNK].info; }
+
+    // The same lines displayUsers and displayItems write, each followed by a line separator
+    public String displayUsers() {
+        StringBuilder text = new StringBuilder(System.lineSeparator());
+        for (int i = 0; i < userCount; i++) {
+            text.append(getUserInfo(i)).append(System.lineSeparator()).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    public String displayItems() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < itemCount; i++) {
+            if (i > 0) {
+                text.append(System.lineSeparator());
+            }
+            text.append(getItemInfo(i)).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+}
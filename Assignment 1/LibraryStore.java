@@ -0,0 +1,122 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.function.Consumer;
+
+// Keeps the state of a library across runs. Every borrow, return and pay command is appended to a log
+// as soon as it is applied, before its output is written. Once snapshotEvery commands have been logged,
+// a binary snapshot of the loan table is written when the command that is running has finished.
+// The snapshot records how many bytes of the log it covers, so a restart loads it, seeks the log to that point
+// and replays only the commands logged after it, however long the log has grown.
+public class LibraryStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x4C494232; // "LIB2", the log position is a byte offset
+
+    private final String logFile;
+    private final String snapshotFile;
+    private final int snapshotEvery;
+    private final LoanTable loanTable;
+    private final LibraryClock clock;
+
+    private FileOutputStream log;
+    private long logBytes = 0; // Length of the log, the snapshot records how much of it it covers
+    private int sinceSnapshot = 0; // Commands logged since the last snapshot
+    private boolean failed = false; // Set when a command could not be logged, no snapshot is written after that
+
+    public LibraryStore(String logFile, String snapshotFile, int snapshotEvery, LoanTable loanTable, LibraryClock clock) {
+        this.logFile = logFile;
+        this.snapshotFile = snapshotFile;
+        this.snapshotEvery = snapshotEvery;
+        this.loanTable = loanTable;
+        this.clock = clock;
+    }
+
+    // Loads the snapshot if there is one, then hands every logged command after it to apply.
+    public void recover(Consumer<String> apply) throws IOException {
+        long covered = 0;
+        if (Files.exists(Paths.get(snapshotFile))) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Not a library snapshot: " + snapshotFile);
+                }
+                covered = in.readLong();
+                clock.observe(in.readLong());
+                loanTable.readFrom(in);
+            }
+        }
+        if (Files.exists(Paths.get(logFile))) {
+            try (FileChannel channel = FileChannel.open(Paths.get(logFile), StandardOpenOption.READ)) {
+                // The commands the snapshot covers are never read again
+                channel.position(covered);
+                BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    apply.accept(line);
+                }
+                logBytes = channel.size();
+            }
+        }
+        log = new FileOutputStream(logFile, true);
+    }
+
+    // Every command is written to the file in one call, so a run that dies keeps every command whose output was written.
+    // A command that cannot be logged stops the branch, its output must not be written without it.
+    // Whatever part of it reached the file is cut off again, so the next restart does not replay half a command.
+    public void append(String command) {
+        byte[] line = (command + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        try {
+            log.write(line);
+        } catch (IOException e) {
+            failed = true;
+            try {
+                log.getChannel().truncate(logBytes);
+            } catch (IOException ignored) {
+                // Left as it is, the restart stops at the broken line
+            }
+            throw new UncheckedIOException("Error writing to log file", e);
+        }
+        logBytes += line.length;
+        sinceSnapshot++;
+    }
+
+    // Called when a command and everything it caused (hand-offs, overdue take-backs) are done.
+    // A snapshot taken in the middle of a command would miss the rest of it, which no replay brings back.
+    public void commandDone() {
+        if (sinceSnapshot >= snapshotEvery) {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                // Every command is still in the log, the next restart only replays more of it
+                System.out.println("Error writing snapshot file: " + e.getMessage());
+            }
+        }
+    }
+
+    // The snapshot is written next to the old one and moved over it, so a crash never leaves half a snapshot.
+    // The log is not buffered, a snapshot never covers commands that are not in the file.
+    public void writeSnapshot() throws IOException {
+        Path temporary = Paths.get(snapshotFile + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(logBytes);
+            out.writeLong(clock.today());
+            loanTable.writeTo(out);
+        }
+        Files.move(temporary, Paths.get(snapshotFile), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sinceSnapshot = 0;
+    }
+
+    // After a failed append the state holds a command the log does not, so it is not saved
+    public void close() {
+        try {
+            if (!failed) {
+                writeSnapshot();
+            }
+            log.close();
+        } catch (IOException e) {
+            System.out.println("Error writing to log file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+
+// Every loan of a library is one row of three int columns: item index, user index and borrow day (epoch day).
+// Rows are only appended, so the table is also the loan history of the library.
+public class LoanTable {
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Item> items = new ArrayList<>();
+
+    // Rows are appended under the table's lock. The columns are volatile so a reader that finds a row
+    // through a user or item it has locked also sees the column arrays the row was copied into.
+    private volatile int[] itemColumn = new int[64];
+    private volatile int[] userColumn = new int[64];
+    private volatile int[] dayColumn = new int[64];
+    private int size = 0;
+
+    private final PenaltyLedger ledger = new PenaltyLedger();
+
+    // Users and items get their index in the table when they are registered in the library
+    public void addUser(User user) {
+        user.register(this, users.size());
+        users.add(user);
+    }
+
+    public void addItem(Item item) {
+        item.register(this, items.size());
+        items.add(item);
+    }
+
+    // Appends a loan and returns its row
+    public synchronized int add(int item, int user, int day) {
+        if (size == itemColumn.length) {
+            itemColumn = Arrays.copyOf(itemColumn, size * 2);
+            userColumn = Arrays.copyOf(userColumn, size * 2);
+            dayColumn = Arrays.copyOf(dayColumn, size * 2);
+        }
+        itemColumn[size] = item;
+        userColumn[size] = user;
+        dayColumn[size] = day;
+        return size++;
+    }
+
+    public int getItem(int row) { return itemColumn[row]; }
+    public int getUser(int row) { return userColumn[row]; }
+    public int getDay(int row) { return dayColumn[row]; }
+    public int size() { return size; }
+
+    public PenaltyLedger getLedger() { return ledger; }
+
+    public User getUserAt(int index) { return users.get(index); }
+    public Item getItemAt(int index) { return items.get(index); }
+    public int itemCount() { return items.size(); }
+
+    // The borrow date is written back in the same dd/MM/yyyy form it was read in
+    public String formatDay(int row) { return LocalDate.ofEpochDay(dayColumn[row]).format(LibraryClock.DATE_FORMAT); }
+
+    // Writes the loan rows, the penalty ledger and the loan state of every user and item for a snapshot.
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(users.size());
+        out.writeInt(items.size());
+        out.writeInt(size);
+        for (int row = 0; row < size; row++) {
+            out.writeInt(itemColumn[row]);
+            out.writeInt(userColumn[row]);
+            out.writeInt(dayColumn[row]);
+        }
+        ledger.writeTo(out);
+        for (User user : users) {
+            user.writeState(out);
+        }
+        for (Item item : items) {
+            item.writeState(out);
+        }
+    }
+
+    // Reads a snapshot written by writeTo, the users and items must be loaded from the same catalogue.
+    public void readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != users.size() || in.readInt() != items.size()) {
+            throw new IOException("Snapshot does not match the users and items of the library");
+        }
+        size = 0;
+        int rows = in.readInt();
+        for (int row = 0; row < rows; row++) {
+            add(in.readInt(), in.readInt(), in.readInt());
+        }
+        ledger.readFrom(in);
+        for (User user : users) {
+            user.readState(in);
+        }
+        for (Item item : items) {
+            item.readState(in);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+import java.io.*;
+
+public class OutputSink {
+
+    private final Writer writer;
+    private final int bufferSize;
+    private final StringBuilder buffer = new StringBuilder();
+
+    // The file is overwritten when the sink is opened, as the old writeOutput did at the end of the run.
+    public OutputSink(String filename, int bufferSize) throws IOException {
+        this.writer = new FileWriter(filename, false);
+        this.bufferSize = bufferSize;
+    }
+
+    // Lines are collected in the buffer and written to the file whenever the buffer is full,
+    // so memory use is bounded by the buffer size instead of the size of the whole report.
+    public void writeLine(String message) {
+        buffer.append(message).append(System.lineSeparator());
+        if (buffer.length() >= bufferSize) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        try {
+            writer.write(buffer.toString());
+            writer.flush();
+            buffer.setLength(0);
+        } catch (IOException e) {
+            System.out.println("Error writing to output file: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        flush();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.out.println("Error writing to output file: " + e.getMessage());
+        }
+    }
+}
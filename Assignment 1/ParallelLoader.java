@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+// Builds the users or items of a large text file on the fork-join pool. The file is cut into chunks that
+// start and end on line boundaries, every chunk is tokenized and turned into objects on its own,
+// and the chunks are joined back in file order so registering them keeps the file's order.
+public class ParallelLoader {
+
+    // Smaller chunks are not worth a task of their own
+    private static final int MIN_CHUNK = 1 << 16;
+
+    public static <T> List<T> load(String fileName, Function<List<String>, T> create) throws IOException {
+        return load(fileName, create, ForkJoinPool.commonPool());
+    }
+
+    // Loads on the given pool, the benchmark uses pools of different sizes
+    public static <T> List<T> load(String fileName, Function<List<String>, T> create, ForkJoinPool pool) throws IOException {
+        byte[] content = Files.readAllBytes(Paths.get(fileName));
+
+        int chunks = Math.max(1, Math.min(pool.getParallelism() * 4, content.length / MIN_CHUNK));
+        int[] bounds = new int[chunks + 1];
+        for (int i = 1; i < chunks; i++) {
+            int bound = Math.max(bounds[i - 1], (int) ((long) content.length * i / chunks));
+            while (bound < content.length && content[bound] != '\n') {
+                bound++;
+            }
+            bounds[i] = Math.min(content.length, bound + 1);
+        }
+        bounds[chunks] = content.length;
+
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            tasks.add(pool.submit(() -> {
+                List<T> created = new ArrayList<>();
+                for (List<String> row : Tokenizer.toRows(content, start, end)) {
+                    T object = create.apply(row);
+                    if (object != null) {
+                        created.add(object);
+                    }
+                }
+                return created;
+            }));
+        }
+
+        List<T> loaded = new ArrayList<>();
+        for (ForkJoinTask<List<T>> task : tasks) {
+            loaded.addAll(task.join());
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.*;
+import java.util.Arrays;
+
+// Every penalty charged for an overdue loan and every payment is one entry of the ledger, so the penalty
+// history of a library can be audited. The entries of a user are chained through the previous column,
+// and a user's penalty is only summed from its chain, back to its last payment, when it is asked for.
+public class PenaltyLedger {
+
+    public static final int PAYMENT = -1; // The item column of a payment
+
+    // Entries are appended under the ledger's lock, the columns are volatile for the same reason as in LoanTable
+    private volatile int[] userColumn = new int[64];
+    private volatile int[] itemColumn = new int[64];
+    private volatile long[] dayColumn = new long[64];
+    private volatile int[] amountColumn = new int[64];
+    private volatile int[] previousColumn = new int[64]; // The user's entry before this one, -1 for the first
+    private int size = 0;
+
+    // Appends an entry to the chain that ends at last and returns the new end of the chain
+    public synchronized int add(int user, int item, long day, int amount, int last) {
+        if (size == userColumn.length) {
+            userColumn = Arrays.copyOf(userColumn, size * 2);
+            itemColumn = Arrays.copyOf(itemColumn, size * 2);
+            dayColumn = Arrays.copyOf(dayColumn, size * 2);
+            amountColumn = Arrays.copyOf(amountColumn, size * 2);
+            previousColumn = Arrays.copyOf(previousColumn, size * 2);
+        }
+        userColumn[size] = user;
+        itemColumn[size] = item;
+        dayColumn[size] = day;
+        amountColumn[size] = amount;
+        previousColumn[size] = last;
+        return size++;
+    }
+
+    // The sum of the charges after the last payment of the chain that ends at last
+    public int balance(int last) {
+        int balance = 0;
+        for (int entry = last; entry != -1 && itemColumn[entry] != PAYMENT; entry = previousColumn[entry]) {
+            balance += amountColumn[entry];
+        }
+        return balance;
+    }
+
+    public int getUser(int entry) { return userColumn[entry]; }
+    public int getItem(int entry) { return itemColumn[entry]; }
+    public long getDay(int entry) { return dayColumn[entry]; }
+    public int getAmount(int entry) { return amountColumn[entry]; }
+    public int size() { return size; }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        for (int entry = 0; entry < size; entry++) {
+            out.writeInt(userColumn[entry]);
+            out.writeInt(itemColumn[entry]);
+            out.writeLong(dayColumn[entry]);
+            out.writeInt(amountColumn[entry]);
+            out.writeInt(previousColumn[entry]);
+        }
+    }
+
+    public void readFrom(DataInputStream in) throws IOException {
+        size = 0;
+        int entries = in.readInt();
+        for (int entry = 0; entry < entries; entry++) {
+            add(in.readInt(), in.readInt(), in.readLong(), in.readInt(), in.readInt());
+        }
+    }
+}
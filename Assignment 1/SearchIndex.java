@@ -0,0 +1,141 @@
+import java.util.*;
+
+// An inverted index from the words of item names, authors, publishers, directors, genres and categories
+// to the items that contain them. Each word keeps the loan table indexes of its items as they are added, and before
+// a search the lists are turned into sorted ranks of the items' IDs, so walking a list gives the items in ID order
+// without sorting. A search walks the list of its rarest word and keeps the items the other words' lists have too,
+// moving through each of those lists only forward, so it never goes back over items it has passed.
+// Lists are int arrays rather than bit sets, so the many words that only one item has stay small.
+public class SearchIndex {
+
+    private final Map<String, Postings> itemsByWord = new HashMap<>();
+    private final LoanTable loanTable;
+
+    // The same lists as sorted ID ranks, and the item and the ID of each rank, null when items were added after they were made.
+    // The IDs have their own array so a search that does not look at availability never reads the items.
+    private Map<String, int[]> ranksByWord;
+    private Item[] itemsByRank;
+    private String[] IDsByRank;
+
+    // The loan table indexes of the items of one word, in the order they were added
+    private static final class Postings {
+        private int[] items = new int[1];
+        private int size = 0;
+
+        void add(int item) {
+            // A word found in two fields of the same item is kept once
+            if (size > 0 && items[size - 1] == item) {
+                return;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+    }
+
+    public SearchIndex(LoanTable loanTable) {
+        this.loanTable = loanTable;
+    }
+
+    public void add(Item item) {
+        for (String field : item.getSearchFields()) {
+            for (String word : words(field)) {
+                itemsByWord.computeIfAbsent(word, key -> new Postings()).add(item.getIndex());
+            }
+        }
+        ranksByWord = null;
+        itemsByRank = null;
+        IDsByRank = null;
+    }
+
+    // The IDs of the items that contain every word of the query, in ID order
+    public List<String> search(String query, boolean availableOnly) {
+        rank();
+        List<int[]> lists = new ArrayList<>();
+        for (String word : words(query)) {
+            int[] ranks = ranksByWord.get(word);
+            if (ranks == null) {
+                return new ArrayList<>();
+            }
+            lists.add(ranks);
+        }
+        if (lists.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int[] rarest = Collections.min(lists, Comparator.comparingInt(ranks -> ranks.length));
+        lists.remove(rarest);
+        // A one word search finds every item of its list, so the list of IDs is made that long at once
+        List<String> IDs = new ArrayList<>(lists.isEmpty() && !availableOnly ? rarest.length : 10);
+        int[] positions = new int[lists.size()];
+        for (int rank : rarest) {
+            if (inAll(lists, positions, rank) && (!availableOnly || itemsByRank[rank].isAvailable())) {
+                IDs.add(IDsByRank[rank]);
+            }
+        }
+        return IDs;
+    }
+
+    // Whether every list has the rank. Ranks are asked in increasing order, so each list keeps the position
+    // it got to and looks ahead from there in steps that double, then narrows down with a binary search.
+    private static boolean inAll(List<int[]> lists, int[] positions, int rank) {
+        for (int i = 0; i < lists.size(); i++) {
+            int[] ranks = lists.get(i);
+            int from = positions[i];
+            int step = 1;
+            while (from + step < ranks.length && ranks[from + step] < rank) {
+                from += step;
+                step *= 2;
+            }
+            int found = Arrays.binarySearch(ranks, from, Math.min(from + step + 1, ranks.length), rank);
+            positions[i] = found >= 0 ? found : -found - 1;
+            if (found < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Items are all added while the library loads, so the lists are ranked once, by the first search after that
+    private void rank() {
+        if (ranksByWord != null) {
+            return;
+        }
+        Item[] items = new Item[loanTable.itemCount()];
+        for (int index = 0; index < items.length; index++) {
+            items[index] = loanTable.getItemAt(index);
+        }
+        Arrays.sort(items, Comparator.comparing(Item::getID));
+        int[] rankOfIndex = new int[items.length];
+        String[] IDs = new String[items.length];
+        for (int rank = 0; rank < items.length; rank++) {
+            rankOfIndex[items[rank].getIndex()] = rank;
+            IDs[rank] = items[rank].getID();
+        }
+
+        Map<String, int[]> ranks = new HashMap<>(itemsByWord.size() * 2);
+        for (Map.Entry<String, Postings> entry : itemsByWord.entrySet()) {
+            Postings postings = entry.getValue();
+            int[] ranked = new int[postings.size];
+            for (int i = 0; i < postings.size; i++) {
+                ranked[i] = rankOfIndex[postings.items[i]];
+            }
+            Arrays.sort(ranked);
+            ranks.put(entry.getKey(), ranked);
+        }
+        ranksByWord = ranks;
+        itemsByRank = items;
+        IDsByRank = IDs;
+    }
+
+    // Words are the lower case runs of letters and digits
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
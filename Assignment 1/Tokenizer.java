@@ -0,0 +1,86 @@
+import java.util.*;
+
+// Splits comma separated lines in a byte buffer without creating any objects. Fields are handed to the handler
+// as offsets into the buffer, so the caller decides what, if anything, to build from them.
+// Lines and fields follow the old readFileAndParse: empty lines are skipped, lines are trimmed,
+// and empty fields at the end of a line are dropped the same way String.split drops them.
+public class Tokenizer {
+
+    public interface FieldHandler {
+        void field(byte[] buffer, int start, int end);
+        void endOfLine();
+    }
+
+    public static void tokenize(byte[] buffer, int length, FieldHandler handler) {
+        tokenize(buffer, 0, length, handler);
+    }
+
+    // Tokenizes the lines between start and end, start should be at the beginning of a line
+    public static void tokenize(byte[] buffer, int start, int end, FieldHandler handler) {
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd > lineStart) {
+                tokenizeLine(buffer, lineStart, lineEnd, handler);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private static void tokenizeLine(byte[] buffer, int start, int end, FieldHandler handler) {
+        // Trimmed the same way as String.trim, bytes of multi-byte characters are never below a space
+        while (start < end && (buffer[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            handler.field(buffer, start, end);
+            handler.endOfLine();
+            return;
+        }
+        // Trailing empty fields are dropped
+        while (end > start && buffer[end - 1] == ',') {
+            end--;
+        }
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == ',') {
+                handler.field(buffer, fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        if (end > start) {
+            handler.field(buffer, fieldStart, end);
+        }
+        handler.endOfLine();
+    }
+
+    // Collects the fields into rows of strings, for the callers that work on lists.
+    public static List<List<String>> toRows(byte[] buffer) {
+        return toRows(buffer, 0, buffer.length);
+    }
+
+    public static List<List<String>> toRows(byte[] buffer, int start, int end) {
+        List<List<String>> rows = new ArrayList<>();
+        tokenize(buffer, start, end, new FieldHandler() {
+            private List<String> row = new ArrayList<>();
+
+            @Override
+            public void field(byte[] buffer, int start, int end) {
+                row.add(new String(buffer, start, end - start));
+            }
+
+            @Override
+            public void endOfLine() {
+                rows.add(row);
+                row = new ArrayList<>();
+            }
+        });
+        return rows;
+    }
+}
@@ -1,21 +1,34 @@
-import java.time.*;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.io.*;
 import java.util.*;
 
-public class User {
+public abstract class User {
 
     // Variables that will not be changed later are assigned as Final.
     private final String ID;
     private final String name;
     private final String phoneNumber;
 
+    // The penalty is kept in the penalty ledger, the user only remembers its last entry.
+    // The sum is worked out when the penalty is first asked for and kept until the next entry.
+    private int lastPenaltyEntry = -1;
     private int penalty = 0;
+    private boolean penaltyKnown = true;
     private int maxItems;
     private int overdueDays;
+    private int kind; // The row of the user in the borrow policy table
     private final int penaltyThreshold = 6;
 
-    private List<Item> borrowedItems = new ArrayList<>(); // The list of books that the user borrows is kept
+    private String info; // Cached information block, cleared whenever the penalty changes
+    private int version = 0; // Counts the changes of the information block, used by LibrarySnapshot
+
+    // The user's index in the loan table of its library
+    private LoanTable loanTable;
+    private int index = -1;
+
+    // Rows of the user's open loans, ordered by borrow day. Every loan of a user has the same overdueDays,
+    // so the head is always the first loan to become overdue and the overdue check only looks at the head.
+    private int[] openLoans = new int[4];
+    private int openCount = 0;
 
     // The constructor used by the partners in each class connected to the User class.
     protected User(String name, String ID, String phoneNumber) {
@@ -25,88 +38,169 @@ public class User {
     }
 
     public int borrow(Item item, String date) {
-        if (penalty >= getPenaltyThreshold()) {
+        if (getPenalty() >= getPenaltyThreshold()) {
             return 1;
         }
-        if (borrowedItems.size() >= getMaxItems()) {
+        if (openCount >= getMaxItems()) {
             return 3;
         }
         if (!canBorrow(item)) {
             return 2;
         }
-        if (item.getBorrowedBy() != null) {
+        if (!item.isAvailable()) {
             return 4;
         }
 
-        borrowedItems.add(item);
-        item.setBorrowed_date(date);
-        item.setBorrowed_by(getName());
+        // The date is parsed once here and kept as an epoch day in the loan table
+        int borrowDay = Math.toIntExact(LibraryClock.toEpochDay(date));
+        int loan = loanTable.add(item.getIndex(), index, borrowDay);
+        addOpenLoan(loan);
+        item.setLoan(loan);
         return 0;
     }
 
+    private void addOpenLoan(int loan) {
+        if (openCount == openLoans.length) {
+            openLoans = Arrays.copyOf(openLoans, openCount * 2);
+        }
+        // Insertion keeps the rows ordered by borrow day, a user only holds a few loans at a time
+        int position = openCount;
+        while (position > 0 && loanTable.getDay(openLoans[position - 1]) > loanTable.getDay(loan)) {
+            openLoans[position] = openLoans[position - 1];
+            position--;
+        }
+        openLoans[position] = loan;
+        openCount++;
+    }
+
+    // The items of the user's open loans, the oldest loan first
+    public List<Item> getOpenItems() {
+        List<Item> openItems = new ArrayList<>(openCount);
+        for (int i = 0; i < openCount; i++) {
+            openItems.add(loanTable.getItemAt(loanTable.getItem(openLoans[i])));
+        }
+        return openItems;
+    }
+
+    private void removeOpenLoan(int position) {
+        System.arraycopy(openLoans, position + 1, openLoans, position, openCount - position - 1);
+        openCount--;
+    }
+
     public boolean returnItem(Item item) {
-        if (borrowedItems.contains(item)) {
-            borrowedItems.remove(item);
-            item.setBorrowed_date(null);
-            item.setBorrowed_by(null);
-            return true;
+        for (int i = 0; i < openCount; i++) {
+            if (loanTable.getItem(openLoans[i]) == item.getIndex()) {
+                removeOpenLoan(i);
+                item.setLoan(-1);
+                return true;
+            }
         }
         // This phrase was written for the case of trying to return an object that is not an expression.
         return false;
     }
 
-    public void  pay() {penalty = 0;}
+    // The payment is recorded in the ledger for the given epoch day
+    public void pay(long today) {
+        if (getPenalty() != 0) {
+            addPenaltyEntry(PenaltyLedger.PAYMENT, today, -getPenalty());
+        }
+    }
+
+    private void addPenaltyEntry(int item, long day, int amount) {
+        lastPenaltyEntry = loanTable.getLedger().add(index, item, day, amount, lastPenaltyEntry);
+        penaltyKnown = false;
+        info = null;
+        version++;
+    }
 
     private boolean canBorrow(Item item) {
         // Added a check because some users couldn't get some items according to the class
+        return BorrowPolicy.canBorrow(kind, item.getTypeCode());
+    }
 
-        if (this instanceof Student && item.getType().equals("reference")) {
-            return false;
-        }
-        if(this instanceof AcademicStaff){
-            return true;
-        }
-        if (this instanceof Guest && item.getType().equals("rare") || item.getType().equals("limited")) {
-            return false;
+    // Today is given by the library clock as an epoch day, the number of overdue loans taken back is returned
+    public int checkOverdueItems(long today) {return checkOverdueItems(today, null);}
+
+    // The items taken back are also added to taken, unless it is null
+    public int checkOverdueItems(long today, List<Item> taken) {
+        int overdue = 0;
+        // Only the loans whose due day has come are taken from the head,
+        // an item is overdue once overdueDays days have passed since it was borrowed
+        // Return operation and applying penalty
+        while (openCount > 0 && loanTable.getDay(openLoans[0]) + getOverdueDays() <= today) {
+            Item item = loanTable.getItemAt(loanTable.getItem(openLoans[0]));
+            removeOpenLoan(0);
+            item.setLoan(-1);
+            if (taken != null) {
+                taken.add(item);
+            }
+            addPenaltyEntry(item.getIndex(), today, 2);
+            overdue++;
         }
-        return true;
+        return overdue;
     }
 
-    public void checkOverdueItems() {
-        LocalDate currentDate = LocalDate.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    // The block written by displayUsers is built once and reused until the penalty changes.
+    public String getInfo() {
+        if (info == null) {
+            info = "------ User Information for " + ID + " ------" + System.lineSeparator() + getDetails();
+            if (getPenalty() != 0) {
+                info += System.lineSeparator() + "Penalty: " + getPenalty() + "$";
+            }
+        }
+        return info;
+    }
 
-        List<Item> overdueItems = new ArrayList<>();
+    // The name and detail lines of the information block, written by each user type.
+    protected abstract String getDetails();
 
-        // The operation of determining the items that have passed the time
-        for (Item item : borrowedItems) {
-            LocalDate borrowDate = LocalDate.parse(item.getBorrowedDate(), formatter);
-            long daysBetween = ChronoUnit.DAYS.between(borrowDate, currentDate) + 1;
+    public void register(LoanTable loanTable, int index) {
+        this.loanTable = loanTable;
+        this.index = index;
+    }
 
-            if (daysBetween > getOverdueDays()) {
-                overdueItems.add(item);
-            }
+    // The last penalty entry and open loans of the user, written to and read from a library snapshot
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(lastPenaltyEntry);
+        out.writeInt(openCount);
+        for (int i = 0; i < openCount; i++) {
+            out.writeInt(openLoans[i]);
         }
-        // Return operation and applying penalty
-        for (Item item : overdueItems) {
-            borrowedItems.remove(item);
-            item.setBorrowed_date(null);
-            item.setBorrowed_by(null);
-            penalty += 2;
+    }
+
+    public void readState(DataInputStream in) throws IOException {
+        lastPenaltyEntry = in.readInt();
+        penaltyKnown = false;
+        openCount = in.readInt();
+        openLoans = new int[Math.max(4, openCount)];
+        for (int i = 0; i < openCount; i++) {
+            openLoans[i] = in.readInt();
         }
+        info = null;
+        version++;
     }
 
     //Functions about user
     public String getID() { return ID; }
+    public int getIndex() { return index; }
+    public int getVersion() { return version; }
     public String getName() { return name; }
     public String getPhoneNumber() { return phoneNumber; }
 
     // Functions about setting item
     public void setMaxItems(int maxItems){this.maxItems = maxItems;}
     public void setOverdueDays(int overdueDays) {this.overdueDays = overdueDays;}
+    public void setKind(int kind) {this.kind = kind;}
+    public int getKind() {return kind;}
 
     // Functions about getting item's penalty-related variables
-    public int getPenalty() { return penalty; }
+    public int getPenalty() {
+        if (!penaltyKnown) {
+            penalty = loanTable.getLedger().balance(lastPenaltyEntry);
+            penaltyKnown = true;
+        }
+        return penalty;
+    }
     public int getMaxItems() { return maxItems; }
     public int getOverdueDays() { return overdueDays; }
     public int getPenaltyThreshold() { return penaltyThreshold; }
@@ -128,11 +222,18 @@ class Student extends User {
         // Special rules for student
         setMaxItems(5);
         setOverdueDays(30);
+        setKind(BorrowPolicy.STUDENT);
     }
     public String getFaculty() { return faculty; }
     public String getDepartment() { return department; }
     public String getGrade() { return grade; }
 
+    @Override
+    protected String getDetails() {
+        return "Name: " + getName() + " Phone: " + getPhoneNumber() + System.lineSeparator() +
+                "Faculty: " + faculty + " Department: " + department + " Grade: " + grade + "th";
+    }
+
 }
 
 class AcademicStaff extends User {
@@ -150,12 +251,19 @@ class AcademicStaff extends User {
         // Special rules for academic staff
         setMaxItems(3);
         setOverdueDays(15);
+        setKind(BorrowPolicy.ACADEMIC_STAFF);
 
     }
     public String getFaculty() { return faculty; }
     public String getDepartment() { return department; }
     public String getTitle() { return title; }
 
+    @Override
+    protected String getDetails() {
+        return "Name: " + title.trim() + " " + getName() + " Phone: " + getPhoneNumber() + System.lineSeparator() +
+                "Faculty: " + faculty + " Department: " + department;
+    }
+
 }
 
 class Guest extends User {
@@ -169,7 +277,14 @@ class Guest extends User {
         // Special rules for guest
         setMaxItems(1);
         setOverdueDays(7);
+        setKind(BorrowPolicy.GUEST);
     }
     public String getOccupation() { return occupation; }
 
+    @Override
+    protected String getDetails() {
+        return "Name: " + getName() + " Phone: " + getPhoneNumber() + System.lineSeparator() +
+                "Occupation: " + occupation;
+    }
+
 }
\ No newline at end of file
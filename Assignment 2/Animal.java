@@ -5,6 +5,7 @@ abstract class Animal{
     private final String name;
     private final int age;
     private double dailyFood;
+    private FoodStock warehouse; // The food warehouse of the animal's enclosure
 
     public Animal(String name, int age){
         this.name = name;
@@ -14,6 +15,8 @@ abstract class Animal{
     public int getAge() {return age;}
     public String getName() {return name;}
     public double getDailyFood(){return dailyFood;}
+    public FoodStock getWarehouse() {return warehouse;}
+    public void setWarehouse(FoodStock warehouse) {this.warehouse = warehouse;}
 
     // Setter
     protected void setDailyFoodValue(double dailyFood) {this.dailyFood = dailyFood;}
@@ -48,8 +51,8 @@ class Lion extends Animal {
     public String eat(double numberOfMeals) {
         double neededFood = getDailyFood() * numberOfMeals;
 
-        if (Food.getMeatAmount() >= neededFood) {
-            Food.setMeatAmount(Food.getMeatAmount() - neededFood);
+        // The check and the take are one step on the stock, so two feedings cannot both take the last of it
+        if (getWarehouse().take(FoodStock.MEAT, neededFood)) {
             return getName() + " has been given " + String.format(Locale.US, "%.3f", neededFood) + " kgs of meat";
         } else {
             throw new NotEnoughFoodException("Error: Not enough Meat");
@@ -82,8 +85,8 @@ class Elephant extends Animal {
     public String eat(double numberOfMeals) {
         double neededFood = getDailyFood() * numberOfMeals;
 
-        if (Food.getPlantAmount() >= neededFood) {
-            Food.setPlantAmount(Food.getPlantAmount() - neededFood);
+        // The check and the take are one step on the stock, so two feedings cannot both take the last of it
+        if (getWarehouse().take(FoodStock.PLANT, neededFood)) {
             return getName() + " has been given " + String.format(Locale.US, "%.3f", neededFood) + " kgs assorted fruits and hay";
         } else {
             throw new NotEnoughFoodException("Error: Not enough Plant");
@@ -116,8 +119,8 @@ class Penguin extends Animal{
     public String eat(double numberOfMeals) {
         double neededFood = getDailyFood() * numberOfMeals;
 
-        if (Food.getFishAmount() >= neededFood) {
-            Food.setFishAmount(Food.getFishAmount() - neededFood);
+        // The check and the take are one step on the stock, so two feedings cannot both take the last of it
+        if (getWarehouse().take(FoodStock.FISH, neededFood)) {
             return getName() + " has been given " + String.format(Locale.US, "%.3f", neededFood) + " kgs of various kinds of fish";
         } else {
             throw new NotEnoughFoodException("Error: Not enough Fish");
@@ -150,17 +153,13 @@ class Chimpanzee extends Animal {
     public String eat(double numberOfMeals) {
         double halfFood = getDailyFood() / 2.0 * numberOfMeals;
 
-        if (Food.getMeatAmount() >= halfFood && Food.getPlantAmount() >= halfFood) {
-            Food.setMeatAmount(Food.getMeatAmount() - halfFood);
-            Food.setPlantAmount(Food.getPlantAmount() - halfFood);
-            return getName() + " has been given " + String.format(Locale.US, "%.3f", halfFood) + " kgs of meat and " + String.format(Locale.US, "%.3f", halfFood) + " kgs of leaves";
-        } else {
-            if (halfFood > Food.getPlantAmount()) {
-                throw new NotEnoughFoodException("Error: Not enough Plant");
-            } else if (halfFood > Food.getMeatAmount()) {
-                throw new NotEnoughFoodException("Error: Not enough Meat");
-            }
+        // Meat and plant are taken together or not at all, plant is checked first as before
+        int shortFood = getWarehouse().takeBoth(FoodStock.PLANT, halfFood, FoodStock.MEAT, halfFood);
+        if (shortFood == FoodStock.PLANT) {
+            throw new NotEnoughFoodException("Error: Not enough Plant");
+        } else if (shortFood == FoodStock.MEAT) {
+            throw new NotEnoughFoodException("Error: Not enough Meat");
         }
-        return "Something went wrong.";
+        return getName() + " has been given " + String.format(Locale.US, "%.3f", halfFood) + " kgs of meat and " + String.format(Locale.US, "%.3f", halfFood) + " kgs of leaves";
     }
 }
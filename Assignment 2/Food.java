@@ -1,38 +1,32 @@
-import java.util.Locale;
-
+// One line of the foods file. The amount goes into the warehouse of the enclosure the line names,
+// or of the zoo's main enclosure when it names none.
 class Food {
 
-    private static double meatAmount = 0;
-    private static double plantAmount = 0;
-    private static double fishAmount = 0;
+    private final String type;
+    private final double amount;
+    private final String enclosure;
+
+    public Food(String type, double amount, String enclosure) {
+        this.type = type;
+        this.amount = amount;
+        this.enclosure = enclosure;
+    }
 
-    public Food(String type, double amount) {
+    public String getType() { return type; }
+    public double getAmount() { return amount; }
+    public String getEnclosure() { return enclosure; }
+
+    // The food of a type in the stock, -1 for a type the zoo does not keep
+    public static int stockIndex(String type) {
         switch (type) {
             case "Meat":
-                meatAmount += amount;
-                break;
+                return FoodStock.MEAT;
             case "Plant":
-                plantAmount += amount;
-                break;
+                return FoodStock.PLANT;
             case "Fish":
-                fishAmount += amount;
-                break;
+                return FoodStock.FISH;
+            default:
+                return -1;
         }
     }
-
-    public static double getMeatAmount() { return meatAmount; }
-    public static void setMeatAmount(double amount) { meatAmount = amount; }
-
-    public static double getPlantAmount() { return plantAmount; }
-    public static void setPlantAmount(double amount) { plantAmount = amount; }
-
-    public static double getFishAmount() { return fishAmount; }
-    public static void setFishAmount(double amount) { fishAmount = amount; }
-
-    public static String listFoodStock() {
-        return "Listing available Food Stock:\n" +
-                "Plant: " + String.format(Locale.US, "%.3f", plantAmount) + " kgs\n" +
-                "Fish: " + String.format(Locale.US, "%.3f", fishAmount) + " kgs\n" +
-                "Meat: " + String.format(Locale.US, "%.3f", meatAmount) + " kgs";
-    }
 }
@@ -0,0 +1,81 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+// The food warehouse of one enclosure, the animals of the enclosure eat from it.
+// A warehouse can be used by many feeding threads at the same time without a lock.
+// The amounts are kept in an array that is never changed once published, every change makes a new array
+// and swaps it in with compare-and-set, retrying if another thread got there first.
+// Because all the amounts are swapped together, food for an animal that eats two kinds is taken in one step or not at all.
+// The amounts stay in kg doubles with the same subtractions as before, so the printed stock does not change.
+class FoodStock {
+
+    public static final int MEAT = 0;
+    public static final int PLANT = 1;
+    public static final int FISH = 2;
+
+    private final AtomicReference<double[]> amounts = new AtomicReference<>(new double[3]);
+
+    public void add(Food food) {
+        int index = Food.stockIndex(food.getType());
+        if (index != -1) {
+            add(index, food.getAmount());
+        }
+    }
+
+    public void add(int food, double kg) {
+        double[] current;
+        double[] next;
+        do {
+            current = amounts.get();
+            next = current.clone();
+            next[food] += kg;
+        } while (!amounts.compareAndSet(current, next));
+    }
+
+    // Takes the amount if there is enough of it, the stock is left as it is otherwise.
+    // The checks are written as !(stock >= amount) so a NaN amount is refused, as the old checks did.
+    public boolean take(int food, double kg) {
+        double[] current;
+        double[] next;
+        do {
+            current = amounts.get();
+            if (!(current[food] >= kg)) {
+                return false;
+            }
+            next = current.clone();
+            next[food] -= kg;
+        } while (!amounts.compareAndSet(current, next));
+        return true;
+    }
+
+    // Takes both amounts together or neither. Returns -1 when they are taken, otherwise the food that is short,
+    // the first one being checked first.
+    public int takeBoth(int first, double firstKg, int second, double secondKg) {
+        double[] current;
+        double[] next;
+        do {
+            current = amounts.get();
+            if (!(current[first] >= firstKg)) {
+                return first;
+            }
+            if (!(current[second] >= secondKg)) {
+                return second;
+            }
+            next = current.clone();
+            next[first] -= firstKg;
+            next[second] -= secondKg;
+        } while (!amounts.compareAndSet(current, next));
+        return -1;
+    }
+
+    public double getAmount(int food) { return amounts.get()[food]; }
+
+    // The amounts are read from one array, so the listing never mixes two moments
+    public String listFoodStock() {
+        double[] current = amounts.get();
+        return "Listing available Food Stock:\n" +
+                "Plant: " + String.format(Locale.US, "%.3f", current[PLANT]) + " kgs\n" +
+                "Fish: " + String.format(Locale.US, "%.3f", current[FISH]) + " kgs\n" +
+                "Meat: " + String.format(Locale.US, "%.3f", current[MEAT]) + " kgs";
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Measures feedings per second on one FoodStock shared by more and more threads.
+// Usage: FoodStockBenchmark [threads...], defaults to 1 4 16 64.
+// Each thread feeds like a mix of lions, elephants, penguins and chimpanzees, every feeding takes 1 kg of each food
+// it needs so the sums are exact. Two checks run with every thread count:
+// with a large stock nothing may fail and the stock must go down by exactly what was taken,
+// with a small stock the feedings that succeed must use it up exactly, never more.
+public class FoodStockBenchmark {
+
+    private static final int FEEDINGS = 200000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int[] threadCounts = args.length == 0 ? new int[] {1, 4, 16, 64} : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        System.out.println("threads,feedings/s");
+        for (int threads : threadCounts) {
+            long nanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                nanos += run(threads, 1e12, true);
+                run(threads, 10000, false);
+            }
+            long total = (long) threads * FEEDINGS * ROUNDS;
+            System.out.printf(Locale.US, "%d,%.0f%n", threads, total * 1e9 / nanos);
+        }
+    }
+
+    // Returns the time the threads took
+    private static long run(int threads, double initial, boolean enough) {
+        FoodStock stock = new FoodStock();
+        stock.add(FoodStock.MEAT, initial);
+        stock.add(FoodStock.PLANT, initial);
+        stock.add(FoodStock.FISH, initial);
+        LongAdder[] taken = {new LongAdder(), new LongAdder(), new LongAdder()};
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> feeders = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int thread = 0; thread < threads; thread++) {
+            Random random = new Random(thread);
+            feeders.add(executor.submit(() -> {
+                for (int i = 0; i < FEEDINGS; i++) {
+                    int animal = random.nextInt(4);
+                    if (animal == 3) {
+                        if (stock.takeBoth(FoodStock.PLANT, 1, FoodStock.MEAT, 1) == -1) {
+                            taken[FoodStock.PLANT].increment();
+                            taken[FoodStock.MEAT].increment();
+                        } else if (enough) {
+                            throw new IllegalStateException("a chimpanzee feeding failed with food in stock");
+                        }
+                    } else if (stock.take(animal, 1)) {
+                        taken[animal].increment();
+                    } else if (enough) {
+                        throw new IllegalStateException("a feeding failed with food in stock");
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> feeder : feeders) {
+                feeder.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+
+        for (int food = 0; food < 3; food++) {
+            double left = stock.getAmount(food);
+            if (left < 0 || left + taken[food].sum() != initial) {
+                throw new IllegalStateException("food " + food + ": " + taken[food].sum() + " kg taken but " + left + " kg left of " + initial);
+            }
+        }
+        return nanos;
+    }
+}
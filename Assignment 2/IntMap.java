@@ -0,0 +1,60 @@
+import java.util.*;
+
+// A hash map from int keys to values that keeps the keys in an int array, so no Integer is made for a lookup.
+// Open addressing with linear probing, a slot is free when its value is null. Entries are never removed.
+public class IntMap<V> {
+
+    private int[] keys = new int[16];
+    private Object[] values = new Object[16];
+    private int size = 0;
+
+    // Adds the value unless the key is already there, the value that stays for the key is returned
+    public V putIfAbsent(int key, V value) {
+        Objects.requireNonNull(value);
+        int slot = find(key);
+        if (values[slot] != null) {
+            return get(key);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        // The table is kept at most half full so probes stay short
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        return (V) values[find(key)];
+    }
+
+    public int size() { return size; }
+
+    // The slot holding the key, or the free slot where it would go
+    private int find(int key) {
+        int mask = keys.length - 1;
+        // Sequential IDs are spread over the table by the multiplication
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -1,24 +1,74 @@
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Main {
     
+    // The enclosure of animals and foods whose line names none
+    public static final String MAIN_ENCLOSURE = "Main";
+
     public static void main(String[] args) throws IOException {
 
+        // Every five arguments (animals, persons, foods, commands, output) describe one zoo.
+        // Zoos share no animals, persons or food, so each zoo runs on its own worker thread.
+        if (args.length == 0 || args.length % 5 != 0) {
+            System.out.println("Usage: Main <animals> <persons> <foods> <commands> <output> [<animals> <persons> <foods> <commands> <output> ...]");
+            System.exit(1);
+        }
+        int zoos = args.length / 5;
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(zoos, Runtime.getRuntime().availableProcessors()));
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < zoos; i++) {
+            String[] files = Arrays.copyOfRange(args, i * 5, i * 5 + 5);
+            results.add(workers.submit(() -> runZoo(files[0], files[1], files[2], files[3], files[4])));
+        }
+        workers.shutdown();
+
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                System.out.println("Something went wrong " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public static void runZoo(String animalsFile, String personsFile, String foodsFile, String commandsFile, String outputFile) {
+
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(args[4]));
+            BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
+
+            List<List<String>> animals = readFileAndParse(animalsFile);
+            List<List<String>> persons = readFileAndParse(personsFile);
+            List<List<String>> foods = readFileAndParse(foodsFile);
+            List<List<String>> commands = readFileAndParse(commandsFile);
 
-            List<List<String>> animals = readFileAndParse(args[0]);
-            List<List<String>> persons = readFileAndParse(args[1]);
-            List<List<String>> foods = readFileAndParse(args[2]);
-            List<List<String>> commands = readFileAndParse(args[3]);
+            // Each enclosure of the zoo has its own food warehouse. The main enclosure always has one,
+            // the others are made when an animal or a food line first names them.
+            Map<String, FoodStock> warehouses = new HashMap<>();
+            warehouses.put(MAIN_ENCLOSURE, new FoodStock());
+            Map<String, Animal> animalsByName = new HashMap<>();
+            IntMap<Person> personsByID = new IntMap<>();
+            createAnimals(animals, writer, animalsByName, warehouses);
+            createPersons(persons, writer, personsByID);
+            List<Food> createdFoods = createFoods(foods, writer, warehouses);
 
-            List<Animal> createdAnimals = createAnimals(animals, writer);
-            List<Person> createdPersons = createPersons(persons, writer);
-            List<Food> createdFoods = createFoods(foods, writer);
+            // An enclosure named only by animals gets no food, which is most likely a misspelled name
+            Set<String> stocked = new HashSet<>();
+            for (Food food : createdFoods) {
+                stocked.add(food.getEnclosure());
+            }
+            for (String enclosure : warehouses.keySet()) {
+                if (!enclosure.equals(MAIN_ENCLOSURE) && !stocked.contains(enclosure)) {
+                    System.out.println("No food stock for enclosure " + enclosure);
+                }
+            }
 
-            readAndCallCommands(commands, createdAnimals, createdPersons, createdFoods, writer);
+            readAndCallCommands(commands, animalsByName, personsByID, warehouses, writer);
 
             writer.close();
 
@@ -28,21 +78,19 @@ public class Main {
     }
 
     public static List<List<String>> readFileAndParse(String fileName) throws IOException {
-        String content = new String(Files.readAllBytes(Paths.get(fileName)));
-        List<List<String>> allData = new ArrayList<>();
-        String[] lines = content.split("\n+");
-        for (String line : lines) {
-            line = line.trim();
-            allData.add(new ArrayList<>(Arrays.asList(line.split(","))));
-        }
-        return allData;
+        // The file is split into rows by the shared Tokenizer, which scans the bytes without regular expressions
+        return Tokenizer.toRows(Files.readAllBytes(Paths.get(fileName)));
     }
 
-    public static List<Animal> createAnimals(List<List<String>> animals,  BufferedWriter writer) throws IOException {
+    // The created animals are also registered by name in animalsByName, the commands find them there.
+    // An animal eats from the warehouse of the enclosure in its fourth column, or of the main enclosure.
+    public static List<Animal> createAnimals(List<List<String>> animals,  BufferedWriter writer, Map<String, Animal> animalsByName,
+                                             Map<String, FoodStock> warehouses) throws IOException {
         List<Animal> createdAnimals = new ArrayList<>();
         writer.write("***********************************\n");
         writer.write("***Initializing Animal information***\n");
         for (List<String> animal : animals) {
+            int created = createdAnimals.size();
             switch (animal.get(0)) {
                 case "Lion":
                     Lion lion = new Lion(animal.get(1), Integer.parseInt(animal.get(2)));
@@ -67,12 +115,20 @@ public class Main {
                 default:
                     System.out.println("Unknown animal type");
             }
+            if (createdAnimals.size() > created) {
+                createdAnimals.get(created).setWarehouse(createWarehouse(warehouses, enclosureOf(animal, 3)));
+            }
             writer.write("\n");
         }
+        // putIfAbsent keeps the first animal of a repeated name, the one the old linear scan found
+        for (Animal animal : createdAnimals) {
+            animalsByName.putIfAbsent(animal.getName(), animal);
+        }
         return createdAnimals;
     }
 
-    public static List<Person> createPersons(List<List<String>> persons,  BufferedWriter writer) throws IOException {
+    // The created persons are also registered by ID in personsByID, the commands find them there
+    public static List<Person> createPersons(List<List<String>> persons,  BufferedWriter writer, IntMap<Person> personsByID) throws IOException {
         List<Person> createPersons = new ArrayList<>();
         writer.write("***********************************\n");
         writer.write("***Initializing Visitor and Personnel information***\n");
@@ -93,31 +149,43 @@ public class Main {
             }
             writer.write("\n");
         }
+        for (Person person : createPersons) {
+            personsByID.putIfAbsent(person.getID(), person);
+        }
         return createPersons;
     }
 
-    public static List<Food> createFoods(List<List<String>> foods,  BufferedWriter writer) throws IOException {
-        //Although foods are categorized based on animal types, they are managed through a shared stock pool in the system,
-        //meaning all animals consume from the same meat, fish, and plant resources.
+    public static List<Food> createFoods(List<List<String>> foods,  BufferedWriter writer, Map<String, FoodStock> warehouses) throws IOException {
+        //Although foods are categorized based on animal types, they are managed through a shared stock pool in each enclosure,
+        //meaning all animals of an enclosure consume from the same meat, fish, and plant resources.
+        //A food line may name its enclosure in the third column, otherwise it goes to the main enclosure.
         List<Food> createdFoods = new ArrayList<>();
         writer.write("***********************************\n");
         writer.write("***Initializing Food Stock***\n");
         for (List<String> food : foods) {
             double amount = Double.parseDouble(food.get(1));
-            Food newFood = new Food(food.get(0), amount);
+            Food newFood = new Food(food.get(0), amount, enclosureOf(food, 2));
+            createWarehouse(warehouses, newFood.getEnclosure()).add(newFood);
             createdFoods.add(newFood);
             writer.write("There are " + String.format(Locale.US, "%.3f", amount) + " kg of " + food.get(0) + " in stock\n");
         }
         return createdFoods;
     }
 
-    public static void readAndCallCommands(List<List<String>> commands, List<Animal> animals, List<Person> persons, List<Food> foods, BufferedWriter writer) throws IOException {
+    public static void readAndCallCommands(List<List<String>> commands, Map<String, Animal> animals, IntMap<Person> persons, Map<String, FoodStock> warehouses, BufferedWriter writer) throws IOException {
         for (List<String> command : commands) {
             writer.write("***********************************\n");
             writer.write("***Processing new Command***\n");
             switch (command.get(0).trim()){
                 case "List Food Stock":
-                    writer.write(Food.listFoodStock());
+                    // List Food Stock,<enclosure> lists the warehouse of an enclosure, the main one when none is given
+                    String enclosure = enclosureOf(command, 1);
+                    FoodStock warehouse = warehouses.get(enclosure);
+                    if (warehouse == null) {
+                        writer.write("Error: There are no enclosures with the name " + enclosure + ".");
+                    } else {
+                        writer.write(warehouse.listFoodStock());
+                    }
                     break;
                 case "Animal Visitation":
                     try {
@@ -183,22 +251,22 @@ public class Main {
         }
     }
 
-    private static Person findPersonByID(List<Person> persons, int ID) {
-        for (Person person : persons) {
-            if (person.getID() == ID) {
-                return person;
-            }
-        }
-        return null;
+    // The enclosure named in the given column of the row, the main enclosure when the row is shorter
+    private static String enclosureOf(List<String> row, int column) {
+        return row.size() > column ? row.get(column).trim() : MAIN_ENCLOSURE;
     }
 
-    private static Animal findAnimalByName(List<Animal> animals, String name) {
-        for (Animal animal : animals) {
-            if (animal.getName().equals(name)) {
-                return animal;
-            }
-        }
-        return null;
+    // Only animal and food lines make warehouses, commands look them up in the map
+    private static FoodStock createWarehouse(Map<String, FoodStock> warehouses, String enclosure) {
+        return warehouses.computeIfAbsent(enclosure, name -> new FoodStock());
+    }
+
+    private static Person findPersonByID(IntMap<Person> persons, int ID) {
+        return persons.get(ID);
+    }
+
+    private static Animal findAnimalByName(Map<String, Animal> animals, String name) {
+        return animals.get(name);
     }
 }
 // Exception Classes